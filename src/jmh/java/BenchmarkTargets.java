@@ -0,0 +1,37 @@
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Entry points for the benchmarks in findstrings.jmh, typed with JDK types only.
+ *
+ * JMH does not accept benchmark classes in the default package, and a class in a named package cannot
+ * refer to the ( default package ) engines, so the benchmarks look these up once by reflection in their
+ * setup and only call the returned functional interfaces in the measured code.
+ */
+public final class BenchmarkTargets {
+
+  private BenchmarkTargets() {
+  }
+
+  public static List<String> strings(String workload) {
+    return Workload.valueOf(workload).strings();
+  }
+
+  public static long[] orders(String workload, long size, int count) {
+    return Workload.valueOf(workload).orders(size, count);
+  }
+
+  // Builds the engine over the strings and returns its size()
+  public static LongSupplier build(String engine, List<String> strings) {
+    final SubstringIndex index = Engine.valueOf(engine).build(strings);
+    return index::size;
+  }
+
+  // Builds the engine over the strings, returns its get(k) and stores its size() in size[0]
+  public static LongFunction<String> getter(String engine, List<String> strings, long[] size) {
+    final SubstringIndex index = Engine.valueOf(engine).build(strings);
+    size[0] = index.size();
+    return index::get;
+  }
+}
@@ -0,0 +1,54 @@
+import java.util.List;
+
+/**
+ * The SubstringIndex implementations under benchmark, built from a whole workload.
+ */
+public enum Engine {
+
+  TRIE {
+    SubstringIndex build(List<String> strings) {
+      return insertAll(new SubstringSet(), strings);
+    }
+  },
+  TRIE_PARALLEL {
+    SubstringIndex build(List<String> strings) {
+      return SubstringSet.buildParallel(strings);
+    }
+  },
+  RADIX {
+    SubstringIndex build(List<String> strings) {
+      return insertAll(new RadixSubstringSet(), strings);
+    }
+  },
+  AUTOMATON {
+    SubstringIndex build(List<String> strings) {
+      return insertAll(new SuffixAutomatonSet(), strings);
+    }
+  },
+  SUFFIX_ARRAY {
+    SubstringIndex build(List<String> strings) {
+      final SuffixArraySet set = SuffixArraySet.of(strings);
+      // offline index, read-only view
+      return new SubstringIndex() {
+        public long insert(String s) {
+          throw new UnsupportedOperationException("SuffixArraySet is built offline");
+        }
+        public long size() {
+          return set.size();
+        }
+        public String get(long k) {
+          return set.get(k);
+        }
+      };
+    }
+  };
+
+  abstract SubstringIndex build(List<String> strings);
+
+  static SubstringIndex insertAll(SubstringIndex index, List<String> strings) {
+    for(String s : strings) {
+      index.insert(s);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded input generators for the benchmarks.
+ *
+ * CASE_4 .. CASE_6 have the shape of the HackerRank test cases in the SubstringSet javadoc table
+ * ( number of strings, average length, a-z ). SKEWED draws the letters from a Zipf-like distribution and
+ * re-uses motifs, so the trie is deep and narrow. WIDE uses 90 printable symbols, so the nodes near the
+ * root have a large fan-out.
+ */
+public enum Workload {
+
+  CASE_4(20, 383, 26, false),
+  CASE_5(40, 1575, 26, false),
+  CASE_6(50, 1370, 26, false),
+  SKEWED(40, 1575, 26, true),
+  WIDE(40, 1575, 90, false);
+
+  static final long SEED = 0x5eed;
+
+  final int numStrings;
+  final int avgLength;
+  final int alphabet;
+  final boolean skewed;
+
+  Workload(int numStrings, int avgLength, int alphabet, boolean skewed) {
+    this.numStrings = numStrings;
+    this.avgLength = avgLength;
+    this.alphabet = alphabet;
+    this.skewed = skewed;
+  }
+
+  public List<String> strings() {
+    Random r = new Random(SEED ^ ordinal());
+    List<String> strings = new ArrayList<>(numStrings);
+    List<String> motifs = new ArrayList<>();
+    for(int i = 0; i < numStrings; ++i) {
+      // lengths spread uniformly over avg +/- 25%
+      int length = avgLength - avgLength / 4 + r.nextInt(avgLength / 2 + 1);
+      StringBuilder b = new StringBuilder(length);
+      while(b.length() < length) {
+        if(skewed && !motifs.isEmpty() && r.nextInt(4) == 0) {
+          b.append(motifs.get(r.nextInt(motifs.size())));
+        } else {
+          b.append(symbol(r));
+        }
+      }
+      b.setLength(length);
+      strings.add(b.toString());
+      if(skewed) {
+        int at = r.nextInt(length / 2 + 1);
+        motifs.add(b.substring(at, Math.min(length, at + 8 + r.nextInt(24))));
+      }
+    }
+    return Collections.unmodifiableList(strings);
+  }
+
+  // The 1-based orders to query, uniform over [1, size]
+  public long[] orders(long size, int count) {
+    Random r = new Random(SEED ^ size);
+    long[] orders = new long[count];
+    for(int i = 0; i < count; ++i) {
+      orders[i] = 1 + (long) (r.nextDouble() * size);
+    }
+    return orders;
+  }
+
+  char symbol(Random r) {
+    if(!skewed) {
+      return (char) (alphabetStart() + r.nextInt(alphabet));
+    }
+    // Zipf-like : symbol i with probability ~ 1 / (i + 1)
+    double u = r.nextDouble() * Math.log(alphabet + 1);
+    int i = Math.min(alphabet - 1, (int) Math.exp(u) - 1);
+    return (char) (alphabetStart() + i);
+  }
+
+  char alphabetStart() {
+    return (alphabet <= 26) ? 'a' : '!';
+  }
+}
@@ -0,0 +1,47 @@
+package findstrings.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction time of a whole workload ( the 'ConstructionTimeMs' column of the SubstringSet javadoc ),
+ * including the first size(), which is where the lazily counting engines pay for their counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+public class BuildBenchmark {
+
+  @Param({ "CASE_4", "CASE_5", "CASE_6", "SKEWED", "WIDE" })
+  String workload;
+
+  @Param({ "TRIE", "TRIE_PARALLEL", "RADIX", "AUTOMATON", "SUFFIX_ARRAY" })
+  String engine;
+
+  List<String> strings;
+
+  @Setup
+  public void setup() {
+    strings = Targets.strings(workload);
+  }
+
+  @Benchmark
+  public long insert() {
+    return Targets.build(engine, strings).getAsLong();
+  }
+}
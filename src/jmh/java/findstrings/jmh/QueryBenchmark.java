@@ -0,0 +1,57 @@
+package findstrings.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Query throughput over a built index, get(k) for uniformly random orders. Run with the gc profiler
+ * ( on by default in build.gradle ) for the allocation rate per query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+public class QueryBenchmark {
+
+  static final int NUM_ORDERS = 1 << 16;
+
+  @Param({ "CASE_4", "CASE_5", "CASE_6", "SKEWED", "WIDE" })
+  String workload;
+
+  @Param({ "TRIE", "RADIX", "AUTOMATON", "SUFFIX_ARRAY" })
+  String engine;
+
+  LongFunction<String> get;
+  long size;
+  long[] orders;
+  int next;
+
+  @Setup
+  public void setup() {
+    long[] sizeOut = new long[1];
+    get = Targets.getter(engine, Targets.strings(workload), sizeOut);
+    size = sizeOut[0];
+    orders = Targets.orders(workload, size, NUM_ORDERS);
+    next = 0;
+  }
+
+  @Benchmark
+  public String get() {
+    next = (next + 1) & (NUM_ORDERS - 1);
+    return get.apply(orders[next]);
+  }
+}
@@ -0,0 +1,46 @@
+package findstrings.jmh;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Reflective bridge to the default package BenchmarkTargets, used in benchmark setup only.
+ */
+final class Targets {
+
+  private Targets() {
+  }
+
+  @SuppressWarnings("unchecked")
+  static List<String> strings(String workload) {
+    return (List<String>) call("strings", new Class<?>[] { String.class }, workload);
+  }
+
+  static long[] orders(String workload, long size, int count) {
+    return (long[]) call("orders", new Class<?>[] { String.class, long.class, int.class }, workload, size, count);
+  }
+
+  static LongSupplier build(String engine, List<String> strings) {
+    return (LongSupplier) call("build", new Class<?>[] { String.class, List.class }, engine, strings);
+  }
+
+  @SuppressWarnings("unchecked")
+  static LongFunction<String> getter(String engine, List<String> strings, long[] size) {
+    return (LongFunction<String>) call("getter", new Class<?>[] { String.class, List.class, long[].class },
+        engine, strings, size);
+  }
+
+  static Object call(String name, Class<?>[] types, Object... args) {
+    try {
+      Method m = Class.forName("BenchmarkTargets").getMethod(name, types);
+      return m.invoke(null, args);
+    } catch(InvocationTargetException e) {
+      throw new IllegalStateException(e.getCause());
+    } catch(ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/**
+ * Dense, order preserving code for the characters of a known alphabet.
+ *
+ * Reasoning :
+ * The trie stores one label per node, and there are O(n * m^2) nodes. A char label spends 16 bits on
+ * inputs that only ever use a few symbols : a-z ( the HackerRank constraint ) needs 5 bits, DNA needs 2.
+ *
+ * Design :
+ * - The symbols are sorted and symbol i gets the code i. As the codes are in the same order as the
+ *   symbols, a trie built over the codes enumerates its substrings in the original lexicographic order,
+ *   only the output has to map the codes back.
+ * - bits() = ceil(log2(size())) is the width of a packed label, see SubstringSet.NodeStore. It is at least
+ *   1, also for the empty alphabet that Alphabet.detect returns for a corpus of empty strings.
+ * - code(c) is a table lookup, the table only spans up to the largest symbol.
+ *
+ * Eg. of("TGCA") => symbols ACGT, code('G') = 2, bits() = 2
+ */
+public final class Alphabet {
+
+  public static final Alphabet LOWERCASE = of("abcdefghijklmnopqrstuvwxyz");
+  public static final Alphabet DNA = of("ACGT");
+
+  final char[] symbols;
+  // codes[c] = code of c + 1, 0 if c is not in the alphabet
+  final char[] codes;
+  final int bits;
+
+  Alphabet(char[] symbols) {
+    this.symbols = symbols;
+    this.codes = new char[(symbols.length == 0) ? 0 : symbols[symbols.length - 1] + 1];
+    for(int i = 0; i < symbols.length; ++i) {
+      codes[symbols[i]] = (char) (i + 1);
+    }
+    this.bits = (symbols.length <= 1) ? 1 : 32 - Integer.numberOfLeadingZeros(symbols.length - 1);
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  /**
+   * @return the alphabet of the distinct characters of symbols
+   */
+  public static Alphabet of(CharSequence symbols) {
+    boolean[] present = new boolean[Character.MAX_VALUE + 1];
+    int size = 0;
+    for(int i = 0; i < symbols.length(); ++i) {
+      if(!present[symbols.charAt(i)]) {
+        present[symbols.charAt(i)] = true;
+        ++size;
+      }
+    }
+    if(size == Character.MAX_VALUE + 1) {
+      throw new IllegalArgumentException("An alphabet can not hold every char, code Character.MAX_VALUE + 1 is reserved");
+    }
+    char[] sorted = new char[size];
+    for(int c = 0, i = 0; i < size; ++c) {
+      if(present[c]) {
+        sorted[i++] = (char) c;
+      }
+    }
+    return new Alphabet(sorted);
+  }
+
+  /**
+   * @return the smallest alphabet that covers all the strings
+   */
+  public static Alphabet detect(Iterable<? extends CharSequence> strings) {
+    StringBuilder b = new StringBuilder();
+    boolean[] present = new boolean[Character.MAX_VALUE + 1];
+    for(CharSequence s : strings) {
+      for(int i = 0; i < s.length(); ++i) {
+        char c = s.charAt(i);
+        if(!present[c]) {
+          present[c] = true;
+          b.append(c);
+        }
+      }
+    }
+    return of(b);
+  }
+
+  public int size() {
+    return symbols.length;
+  }
+
+  public int bits() {
+    return bits;
+  }
+
+  /**
+   * @return the code of c, or -1 if c is not in the alphabet
+   */
+  public int code(char c) {
+    return (c < codes.length) ? codes[c] - 1 : -1;
+  }
+
+  public char symbol(int code) {
+    return symbols[code];
+  }
+
+  @Override
+  public String toString() {
+    return new String(symbols);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return (o instanceof Alphabet) && Arrays.equals(symbols, ((Alphabet) o).symbols);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(symbols);
+  }
+
+  // -----------------
+  // Internal
+  // -----------------
+  char encode(char c) {
+    int code = code(c);
+    if(code < 0) {
+      throw new IllegalArgumentException(String.format("'%c' ( U+%04X ) is not in the alphabet %s", c, (int) c, this));
+    }
+    return (char) code;
+  }
+
+  char[] encode(String s) {
+    char[] buf = new char[s.length()];
+    for(int i = 0; i < buf.length; ++i) {
+      buf[i] = encode(s.charAt(i));
+    }
+    return buf;
+  }
+}
@@ -0,0 +1,195 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.Getter;
+
+/**
+ * Optional, bounded query cache in front of a SubstringSet.
+ *
+ * Reasoning :
+ * Query traffic is skewed : the same orders, and orders close to each other, are asked for over and
+ * over. Every SubstringSet.find still descends from the root and re-builds the answer char by char.
+ *
+ * Design :
+ * a. Results
+ * - The last 'capacity' order -> result pairs, evicted in LRU or FIFO order.
+ *
+ * b. Checkpoints
+ * - Nearby orders share a long common prefix, so they also share the upper part of their walk. Every
+ *   walk records the deepest node it passed whose subtree still holds CHECKPOINT_SPAN orders on both
+ *   sides of the queried one, as ( node, order of the node's own string, prefix up to the node ).
+ * - A node's subtree is a contiguous range of orders [first, first + count(node) - 1], so the checkpoints
+ *   at or before an order are found with floor lookups, and a walk for an order inside one's range resumes
+ *   from the node with the prefix instead of from the root. Two ranges are either nested or disjoint, so
+ *   the closest checkpoint may be a deeper subtree that ends before the order while one of its ancestors
+ *   still contains it : the lookup goes back through the earlier checkpoints, and the first one containing
+ *   the order is the deepest.
+ * - Checkpoints are bounded and evicted like the results.
+ *
+ * c. Invalidation
+ * - Any insert that adds substrings shifts the orders, so both caches are dropped when the version of the
+ *   underlying set has changed since they were filled.
+ *
+ * Hit / miss counters are exposed through the getters. Not thread-safe, like SubstringSet.
+ */
+public class CachedSubstringSet implements SubstringIndex {
+
+  public enum Eviction { LRU, FIFO }
+
+  static final int CHECKPOINT_SPAN = 64;
+
+  final SubstringSet set;
+  final Map<Long, String> results;
+  final Map<Long, Checkpoint> checkpoints;
+  final TreeMap<Long, Checkpoint> checkpointsByOrder;
+  final SubstringSet.PartitionResult partition;
+  long version;
+
+  @Getter long hits;
+  @Getter long misses;
+  @Getter long checkpointHits;
+
+  public CachedSubstringSet(SubstringSet set, int capacity, Eviction eviction) {
+    this.set = set;
+    this.results = new BoundedMap<>(capacity, eviction);
+    this.checkpointsByOrder = new TreeMap<>();
+    this.checkpoints = new BoundedMap<Long, Checkpoint>(capacity, eviction) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Checkpoint> eldest) {
+        boolean evict = super.removeEldestEntry(eldest);
+        if(evict) {
+          checkpointsByOrder.remove(eldest.getKey());
+        }
+        return evict;
+      }
+    };
+    this.partition = new SubstringSet.PartitionResult();
+    this.version = set.version;
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public long insert(String s) {
+    return set.insert(s);
+  }
+
+  public long size() {
+    return set.size();
+  }
+
+  public String get(long k) {
+    return find(k);
+  }
+
+  public void clear() {
+    results.clear();
+    checkpoints.clear();
+    checkpointsByOrder.clear();
+    version = set.version;
+  }
+
+  // -----------------
+  // Internal : GET
+  // -----------------
+  String find(long order) {
+    if(order < 1 || order > size()) {
+      return null;
+    }
+    if(version != set.version) {
+      clear();
+    }
+
+    String result = results.get(order);
+    if(result != null) {
+      ++hits;
+      return result;
+    }
+    ++misses;
+    result = walk(order);
+    results.put(order, result);
+    return result;
+  }
+
+  // SubstringSet.find, but starting at the closest checkpoint. 'first' is the order of n's own string,
+  // which is 0 for the root ( the empty string ).
+  String walk(long order) {
+    int n = set.root;
+    long first = 0;
+    StringBuilder b = new StringBuilder();
+    Map.Entry<Long, Checkpoint> floor = checkpointsByOrder.floorEntry(order);
+    while(floor != null && !floor.getValue().contains(order)) {
+      floor = checkpointsByOrder.lowerEntry(floor.getKey());
+    }
+    if(floor != null) {
+      Checkpoint cp = checkpoints.get(floor.getKey()); // touch, for LRU
+      n = cp.node;
+      first = cp.first;
+      b.append(cp.prefix);
+      ++checkpointHits;
+    }
+
+    int deepest = SubstringSet.NIL;
+    long deepestFirst = 0;
+    int deepestLength = 0;
+    long k = order - first + 1;
+    while(k > 1) {
+      set.getPartition(n, k - 1, partition);
+      n = partition.getPartition();
+      first += partition.getNumElementsBeforePartition() + 1;
+      k -= partition.getNumElementsBeforePartition() + 1;
+      b.append(set.symbol(n));
+      if(order - first >= CHECKPOINT_SPAN && first + set.nodes.count(n) - 1 - order >= CHECKPOINT_SPAN) {
+        deepest = n;
+        deepestFirst = first;
+        deepestLength = b.length();
+      }
+    }
+    if(deepest != SubstringSet.NIL && !checkpoints.containsKey(deepestFirst)) {
+      Checkpoint cp = new Checkpoint(deepest, deepestFirst, set.nodes.count(deepest), b.substring(0, deepestLength));
+      checkpoints.put(deepestFirst, cp);
+      checkpointsByOrder.put(deepestFirst, cp);
+    }
+    return b.toString();
+  }
+
+  // -----------------
+  // Internal : Core Data-Structures
+  // -----------------
+  static class Checkpoint {
+    final int node;
+    final long first;
+    final long count;
+    final String prefix;
+
+    Checkpoint(int node, long first, long count, String prefix) {
+      this.node = node;
+      this.first = first;
+      this.count = count;
+      this.prefix = prefix;
+    }
+
+    boolean contains(long order) {
+      return order >= first && order < first + count;
+    }
+  }
+
+  static class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    final int capacity;
+
+    BoundedMap(int capacity, Eviction eviction) {
+      super(16, 0.75f, eviction == Eviction.LRU);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > capacity;
+    }
+  }
+}
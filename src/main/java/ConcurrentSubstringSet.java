@@ -0,0 +1,200 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+import lombok.Getter;
+
+/**
+ * SubstringIndex that answers get(k) from any number of threads while a writer keeps inserting.
+ *
+ * Reasoning :
+ * SubstringSet updates counts and sibling links in place during insertSuffixAt, so a concurrent reader
+ * could follow a half-linked sibling list or add up counts from two different versions of the trie. Rather
+ * than locking the read path, readers work on an immutable snapshot of the trie that the writer publishes
+ * atomically once it has finished a batch.
+ *
+ * Design :
+ * a. Writer
+ * - A private SubstringSet takes all inserts. insert / insertAll are synchronized, so there is at most
+ *   one writer at a time, and publish a new snapshot when they are done.
+ * - Its NodeStore records which pages ( PAGE = 2^PAGE_BITS nodes ) were written since the last publish.
+ *
+ * b. Snapshots ( copy-on-write by page )
+ * - A Snapshot holds the node arrays as page tables : labels[n >>> PAGE_BITS][n & PAGE_MASK] etc.
+ * - publish() copies only the dirty pages out of the writer's arrays and shares every clean page with
+ *   the previous snapshot. An insert dirties the pages of its path and of the new nodes, and the new
+ *   nodes are appended at the end, so a small batch on a large trie copies a small fraction of it.
+ * - Pages are never written after they were published. The snapshot is handed over through a volatile
+ *   field, so a reader that has read the reference sees every page fully written ( happens-before ),
+ *   and a get(k) walks one consistent version of counts and children from start to end.
+ *
+ * c. Readers
+ * - get / size read the current snapshot, they never lock and never wait for the writer. A reader that
+ *   needs several answers from the same version ( eg. size() and then get(size()) ) takes snapshot() once.
+ *
+ * Costs : the published pages are a second copy of the trie ( ~2x the node memory of a SubstringSet ), and
+ * snapshots do not carry the ChildIndex, so wide nodes are scanned linearly.
+ */
+public class ConcurrentSubstringSet implements SubstringIndex {
+
+  static final int PAGE_BITS = 12;
+  static final int PAGE = 1 << PAGE_BITS;
+  static final int PAGE_MASK = PAGE - 1;
+
+  final SubstringSet writer;
+  volatile Snapshot snapshot;
+
+  public ConcurrentSubstringSet() {
+    this.writer = new SubstringSet();
+    this.writer.nodes.trackDirtyPages(PAGE_BITS);
+    this.snapshot = new Snapshot(new char[0][], new int[0][], new int[0][], new int[0][], new long[0], 0, 0);
+    publish();
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public synchronized long insert(String s) {
+    long added = writer.insert(s);
+    if(added > 0) {
+      publish();
+    }
+    return added;
+  }
+
+  /**
+   * Inserts all the strings and publishes them as one snapshot, so readers see either none or all of them.
+   * @return the number of distinct substrings that were not present before
+   */
+  public synchronized long insertAll(Collection<String> strings) {
+    long added = 0;
+    for(String s : strings) {
+      added += writer.insert(s);
+    }
+    if(added > 0) {
+      publish();
+    }
+    return added;
+  }
+
+  public long size() {
+    return snapshot.size();
+  }
+
+  public String get(long k) {
+    return snapshot.get(k);
+  }
+
+  /**
+   * @return the latest published, immutable version of the set
+   */
+  public Snapshot snapshot() {
+    return snapshot;
+  }
+
+  // -----------------
+  // Internal : PUBLISH
+  // -----------------
+  // Called by the writer only ( under the monitor )
+  void publish() {
+    Snapshot prev = snapshot;
+    SubstringSet.NodeStore nodes = writer.nodes;
+    int size = nodes.size();
+    int pages = (size + PAGE - 1) >>> PAGE_BITS;
+    char[][] labels = Arrays.copyOf(prev.labels, pages);
+    int[][] counts = Arrays.copyOf(prev.counts, pages);
+    int[][] firstChild = Arrays.copyOf(prev.firstChild, pages);
+    int[][] nextSibling = Arrays.copyOf(prev.nextSibling, pages);
+    BitSet dirty = nodes.dirtyPages;
+    for(int p = dirty.nextSetBit(0); p >= 0 && p < pages; p = dirty.nextSetBit(p + 1)) {
+      int from = p << PAGE_BITS;
+      int to = Math.min(size, from + PAGE);
+      labels[p] = Arrays.copyOfRange(nodes.labels, from, to);
+      counts[p] = Arrays.copyOfRange(nodes.counts, from, to);
+      firstChild[p] = Arrays.copyOfRange(nodes.firstChild, from, to);
+      nextSibling[p] = Arrays.copyOfRange(nodes.nextSibling, from, to);
+    }
+    dirty.clear();
+    long[] bigCounts = Arrays.copyOf(nodes.bigCounts, nodes.bigSize);
+    snapshot = new Snapshot(labels, counts, firstChild, nextSibling, bigCounts, size, writer.version);
+  }
+
+  // -----------------
+  // Internal : Snapshot
+  // -----------------
+  // Read-only, paged copy of the writer's NodeStore at one version. Same walk as SubstringSet.find, the
+  // root is node 0.
+  public static final class Snapshot implements SubstringIndex {
+    final char[][] labels;
+    final int[][] counts;
+    final int[][] firstChild;
+    final int[][] nextSibling;
+    final long[] bigCounts;
+    @Getter final int nodeCount;
+    @Getter final long version;
+
+    Snapshot(char[][] labels, int[][] counts, int[][] firstChild, int[][] nextSibling, long[] bigCounts,
+        int nodeCount, long version) {
+      this.labels = labels;
+      this.counts = counts;
+      this.firstChild = firstChild;
+      this.nextSibling = nextSibling;
+      this.bigCounts = bigCounts;
+      this.nodeCount = nodeCount;
+      this.version = version;
+    }
+
+    public long insert(String s) {
+      throw new UnsupportedOperationException("Snapshot is read-only");
+    }
+
+    public long size() {
+      return (nodeCount == 0) ? 0 : count(0);
+    }
+
+    public String get(long k) {
+      return find(k);
+    }
+
+    String find(long order) {
+      if(order < 1 || order > size()) {
+        return null;
+      }
+
+      StringBuilder b = new StringBuilder();
+      int n = 0;
+      long k = order + 1; // the root itself 'counts' as the empty string
+      while(k > 1) {
+        --k;
+        for(int c = firstChild(n); c != SubstringSet.NIL; c = nextSibling(c)) {
+          long count = count(c);
+          if(k > count) {
+            k -= count;
+            continue;
+          }
+          b.append(label(c));
+          n = c;
+          break;
+        }
+      }
+      return b.toString();
+    }
+
+    char label(int n) {
+      return labels[n >>> PAGE_BITS][n & PAGE_MASK];
+    }
+
+    long count(int n) {
+      int c = counts[n >>> PAGE_BITS][n & PAGE_MASK];
+      return (c >= 0) ? c : bigCounts[~c];
+    }
+
+    int firstChild(int n) {
+      return firstChild[n >>> PAGE_BITS][n & PAGE_MASK];
+    }
+
+    int nextSibling(int n) {
+      return nextSibling[n >>> PAGE_BITS][n & PAGE_MASK];
+    }
+  }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size, log-linear histogram of latencies in nanoseconds.
+ *
+ * Reasoning :
+ * Per-query latency has to be recorded on every get(k), so recording must be a couple of arithmetic
+ * operations and one array increment, with no allocation and no lock. Exact latencies are not needed, a
+ * bounded relative error is enough to read p50 / p99 / p999 off a run.
+ *
+ * Design :
+ * - Values below SUB are counted exactly. Every power-of-two range [2^e, 2^(e+1)) above is split into SUB
+ *   equal sub-buckets, so a bucket is at most 1/SUB ( 12.5% ) wider than its lower bound.
+ * - Values are below 2^63, so the highest range starts at 2^62 and the whole long range fits in
+ *   ( 64 - SUB_BITS ) * SUB buckets.
+ *
+ * Eg. record(1000) => e = 9 ( 512 <= 1000 < 1024 ), sub = (1000 >> 6) & 7 = 7
+ *   => bucket [960, 1023]
+ *
+ * Not thread-safe.
+ */
+public class LatencyHistogram {
+
+  static final int SUB_BITS = 3;
+  static final int SUB = 1 << SUB_BITS;
+  static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+  final long[] buckets;
+  long count;
+  long sum;
+  long max;
+
+  public LatencyHistogram() {
+    this.buckets = new long[BUCKETS];
+  }
+
+  LatencyHistogram(LatencyHistogram other) {
+    this.buckets = other.buckets.clone();
+    this.count = other.count;
+    this.sum = other.sum;
+    this.max = other.max;
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public void record(long nanos) {
+    if(nanos < 0) {
+      nanos = 0;
+    }
+    ++buckets[bucketOf(nanos)];
+    ++count;
+    sum += nanos;
+    if(nanos > max) {
+      max = nanos;
+    }
+  }
+
+  public long count() {
+    return count;
+  }
+
+  public long max() {
+    return max;
+  }
+
+  public double mean() {
+    return (count == 0) ? 0 : (double) sum / count;
+  }
+
+  /**
+   * @return an upper bound ( the end of its bucket, capped at max() ) of the p-th quantile, p in [0, 1]
+   */
+  public long percentile(double p) {
+    if(count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(p * count));
+    long seen = 0;
+    for(int i = 0; i < BUCKETS; ++i) {
+      seen += buckets[i];
+      if(seen >= rank) {
+        return Math.min(max, upperBound(i));
+      }
+    }
+    return max;
+  }
+
+  public LatencyHistogram copy() {
+    return new LatencyHistogram(this);
+  }
+
+  public void reset() {
+    Arrays.fill(buckets, 0);
+    count = 0;
+    sum = 0;
+    max = 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d mean=%.0fns p50=%dns p99=%dns p999=%dns max=%dns",
+        count, mean(), percentile(0.5), percentile(0.99), percentile(0.999), max);
+  }
+
+  // -----------------
+  // Internal
+  // -----------------
+  static int bucketOf(long v) {
+    if(v < SUB) {
+      return (int) v;
+    }
+    int e = 63 - Long.numberOfLeadingZeros(v);
+    int sub = (int) (v >>> (e - SUB_BITS)) & (SUB - 1);
+    return (e - SUB_BITS + 1) * SUB + sub;
+  }
+
+  static long upperBound(int bucket) {
+    if(bucket < SUB) {
+      return bucket;
+    }
+    int e = bucket / SUB + SUB_BITS - 1;
+    long lower = (long) (SUB + bucket % SUB) << (e - SUB_BITS);
+    return lower + (1L << (e - SUB_BITS)) - 1;
+  }
+}
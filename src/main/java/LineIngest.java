@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming ingest of a line-delimited corpus file into a SubstringSet.
+ *
+ * Reasoning :
+ * insert(String) needs the line as a String ( a decoded copy of the bytes ) and then copies it once more
+ * with toCharArray(). For a multi-GB corpus that is two full copies of the input, and two short-lived
+ * objects per line, before the first trie node is touched.
+ *
+ * Design :
+ * - The file is mapped read-only through its FileChannel in windows of at most WINDOW bytes ( a single
+ *   mapping is limited to 2GB ). A window ends after its last '\n', the next one starts right there, so a
+ *   line is never split. A line longer than a window is rejected.
+ * - Lines end with '\n' or "\r\n". Empty lines are skipped. Lines are split on the bytes, so the charset
+ *   has to encode them as the single bytes 0x0A and 0x0D ( ASCII, Latin-1, UTF-8 and most other 8-bit or
+ *   multi-byte charsets ). Any other one, eg. UTF-16 or EBCDIC, is rejected up front.
+ * - Fast path : with ISO_8859_1 every byte is one char, with US_ASCII and UTF_8 every ASCII-only line is.
+ *   Those lines are inserted from the mapped bytes directly, see SubstringSet.insertSuffixAt(int,
+ *   ByteBuffer, int, int). Any other line is decoded to a String and inserted as usual.
+ * - Progress is reported every PROGRESS_BYTES of input and once at the end.
+ *
+ * The windows are unmapped by the GC, like every MappedByteBuffer, so a large ingest holds on to address
+ * space ( not heap ) until the buffers are collected.
+ */
+public final class LineIngest {
+
+  static final long WINDOW = 1L << 30;
+  static final long PROGRESS_BYTES = 1L << 23;
+
+  /**
+   * Ingest progress callback.
+   */
+  public interface Progress {
+    void progress(long bytesDone, long bytesTotal, long lines);
+  }
+
+  private LineIngest() {
+  }
+
+  static long insertLines(SubstringSet set, Path file, Charset charset, Progress progress) throws IOException {
+    return insertLines(set, file, charset, progress, WINDOW);
+  }
+
+  static long insertLines(SubstringSet set, Path file, Charset charset, Progress progress, long window)
+      throws IOException {
+    if(!byteDelimited(charset)) {
+      throw new IllegalArgumentException(String.format("Lines in %s are not delimited by the byte '\\n'", charset));
+    }
+    boolean latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+    boolean asciiCompatible = latin1 || charset.equals(StandardCharsets.US_ASCII)
+        || charset.equals(StandardCharsets.UTF_8);
+    long start = System.nanoTime();
+    long added = 0;
+    long lines = 0;
+    long chars = 0;
+    try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long total = ch.size();
+      long pos = 0;
+      long nextReport = PROGRESS_BYTES;
+      while(pos < total) {
+        long length = Math.min(window, total - pos);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, length);
+        int limit = (int) length;
+        if(pos + length < total) {
+          limit = lastNewline(buf, limit) + 1;
+          if(limit == 0) {
+            throw new IOException(String.format("Line at byte %d is longer than %d bytes", pos, window));
+          }
+        }
+
+        int st = 0;
+        while(st < limit) {
+          int en = st;
+          boolean ascii = true;
+          byte b;
+          while(en < limit && (b = buf.get(en)) != '\n') {
+            ascii &= (b >= 0);
+            ++en;
+          }
+          int end = (en > st && buf.get(en - 1) == '\r') ? en - 1 : en;
+          if(end > st) {
+            if(latin1 || (ascii && asciiCompatible)) {
+              added += set.insertSuffixesOf(buf, st, end);
+              chars += end - st;
+            } else {
+              String line = decode(buf, st, end, charset);
+              added += set.insertSuffixesOf(line);
+              chars += line.length();
+            }
+            ++lines;
+          }
+          st = en + 1;
+          if(progress != null && pos + st >= nextReport) {
+            progress.progress(Math.min(pos + st, total), total, lines);
+            nextReport = pos + st + PROGRESS_BYTES;
+          }
+        }
+        pos += limit;
+      }
+      if(progress != null) {
+        progress.progress(total, total, lines);
+      }
+    }
+    set.indexWideNodes();
+    set.metrics.recordInsert(chars, System.nanoTime() - start);
+    return added;
+  }
+
+  // "\r\n" encodes to the bytes 0x0D 0x0A
+  static boolean byteDelimited(Charset charset) {
+    if(!charset.canEncode()) {
+      return false;
+    }
+    try {
+      ByteBuffer crlf = charset.newEncoder().encode(CharBuffer.wrap("\r\n"));
+      return crlf.remaining() == 2 && crlf.get(0) == '\r' && crlf.get(1) == '\n';
+    } catch(CharacterCodingException e) {
+      return false;
+    }
+  }
+
+  static int lastNewline(ByteBuffer buf, int limit) {
+    for(int i = limit - 1; i >= 0; --i) {
+      if(buf.get(i) == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static String decode(ByteBuffer buf, int st, int en, Charset charset) {
+    ByteBuffer line = buf.duplicate();
+    line.position(st);
+    line.limit(en);
+    return charset.decode(line).toString();
+  }
+}
@@ -0,0 +1,297 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only SubstringIndex over a persisted suffix-trie, memory-mapped from disk.
+ *
+ * Reasoning :
+ * Building the suffix-trie is the expensive part ( O(n * m^2) ), answering queries is cheap. A built
+ * SubstringSet can be saved once and the query processes can then map the file instead of re-building.
+ * Queries walk the mapped bytes directly, there is no deserialization step, so opening is O(1) and all
+ * the processes mapping the same file share one copy of it in the page cache.
+ *
+ * File format ( big-endian ) :
+ *   int   MAGIC
+ *   int   VERSION
+ *   int   nodeCount
+ *   int   bigCount
+ *   int   labelBits
+ *   int   alphabetSize
+ *   int   childStart[nodeCount + 1]
+ *   int   counts[nodeCount]
+ *   long  bigCounts[bigCount]
+ *   long  labels[ceil(nodeCount * labelBits / 64)]
+ *   char  alphabet[alphabetSize]
+ * The nodes are numbered in BFS order with the root as node 0, so the children of node i are the
+ * contiguous ( and still label sorted ) range of nodes [childStart[i], childStart[i + 1]).
+ * counts use the same compact encoding as SubstringSet.NodeStore : a negative entry c refers to
+ * bigCounts[~c] for the few counts that do not fit in an int.
+ * labels are packed back to back, labelBits each, like in SubstringSet.NodeStore. Without an alphabet
+ * ( alphabetSize = 0, labelBits = 16 ) they are 16 bit chars, otherwise codes into the sorted alphabet.
+ * An empty alphabet has alphabetSize = 0 and labelBits = 1, and only the root.
+ * That is 10 bytes per node ( 8.6 with a-z, 8.25 with ACGT ). The file is mapped as a single buffer,
+ * which is limited to MAX_BYTES ( 2GB ), so to ~200M nodes : save() rejects a larger trie with an
+ * IOException before writing anything, and open() a larger file.
+ */
+public class MappedSubstringIndex implements SubstringIndex {
+
+  static final int MAGIC = 0x53534958; // 'SSIX'
+  static final int VERSION = 3;
+  static final int HEADER_BYTES = 6 * 4;
+  static final long MAX_BYTES = Integer.MAX_VALUE;
+
+  final int nodeCount;
+  final IntBuffer childStart;
+  final IntBuffer counts;
+  final LongBuffer bigCounts;
+  final LongBuffer labels;
+  final int labelBits;
+  // symbols of the alphabet, null if the labels are chars
+  final char[] alphabet;
+
+  MappedSubstringIndex(ByteBuffer buf) throws IOException {
+    if(buf.remaining() < HEADER_BYTES || buf.getInt(0) != MAGIC) {
+      throw new IOException("Not a SubstringSet index file");
+    }
+    if(buf.getInt(4) != VERSION) {
+      throw new IOException(String.format("Unsupported index version : %d", buf.getInt(4)));
+    }
+    this.nodeCount = buf.getInt(8);
+    int bigCount = buf.getInt(12);
+    this.labelBits = buf.getInt(16);
+    int alphabetSize = buf.getInt(20);
+    if(labelBits < 1 || labelBits > 16) {
+      throw new IOException(String.format("Unsupported label width : %d", labelBits));
+    }
+    int labelWords = SubstringSet.NodeStore.packedWords(nodeCount, labelBits);
+    long expected = fileBytes(nodeCount, bigCount, labelBits, alphabetSize);
+    if(buf.remaining() != expected) {
+      throw new IOException(String.format("Truncated index file : %d bytes, expected %d", buf.remaining(), expected));
+    }
+    int offset = HEADER_BYTES;
+    this.childStart = slice(buf, offset, 4 * (nodeCount + 1)).asIntBuffer();
+    offset += 4 * (nodeCount + 1);
+    this.counts = slice(buf, offset, 4 * nodeCount).asIntBuffer();
+    offset += 4 * nodeCount;
+    this.bigCounts = slice(buf, offset, 8 * bigCount).asLongBuffer();
+    offset += 8 * bigCount;
+    this.labels = slice(buf, offset, 8 * labelWords).asLongBuffer();
+    offset += 8 * labelWords;
+    if(alphabetSize == 0 && labelBits == 16) {
+      this.alphabet = null;
+    } else {
+      this.alphabet = new char[alphabetSize];
+      slice(buf, offset, 2 * alphabetSize).asCharBuffer().get(alphabet);
+    }
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public static MappedSubstringIndex open(Path path) throws IOException {
+    try(FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+      checkSize(ch.size());
+      // the mapping stays valid after the channel is closed
+      MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+      return new MappedSubstringIndex(buf);
+    }
+  }
+
+  public long insert(String s) {
+    throw new UnsupportedOperationException("MappedSubstringIndex is read-only");
+  }
+
+  public long size() {
+    return count(0);
+  }
+
+  public String get(long k) {
+    return find(k);
+  }
+
+  /**
+   * Reads the whole index back into a new, writable SubstringSet ( with the same alphabet ). Sequential
+   * O(nodeCount), no re-building. The set's stats() only know the node count, not the depths.
+   * @param maxLength the maxLength of the set it was saved from, for later inserts
+   */
+  public SubstringSet load(int maxLength) {
+    Alphabet a = (alphabet == null) ? null : new Alphabet(alphabet.clone());
+    SubstringSet set = new SubstringSet(false, maxLength, a);
+    SubstringSet.NodeStore nodes = set.nodes;
+    nodes.ensureCapacity(nodeCount);
+    // create numbers the nodes 1, 2, .. after the root, which is the same BFS numbering as the file
+    for(int i = 1; i < nodeCount; ++i) {
+      nodes.create(code(i), 0);
+    }
+    for(int i = 0; i < nodeCount; ++i) {
+      nodes.accumulateCountBy(i, count(i));
+      int st = childStart.get(i);
+      int en = childStart.get(i + 1);
+      nodes.firstChild[i] = (st < en) ? st : SubstringSet.NIL;
+      for(int c = st; c + 1 < en; ++c) {
+        nodes.nextSibling[c] = c + 1;
+      }
+    }
+    set.childIndex.indexAll(nodes);
+    return set;
+  }
+
+  // -----------------
+  // Internal : WRITE
+  // -----------------
+  static void write(SubstringSet set, Path path) throws IOException {
+    // without the big counts, so that a file that would not fit is not even truncated
+    Alphabet alphabet = set.alphabet;
+    checkSize(fileBytes(set.nodes.liveCount(), 0, (alphabet == null) ? 16 : alphabet.bits(),
+        (alphabet == null) ? 0 : alphabet.size()));
+    try(OutputStream os = Files.newOutputStream(path)) {
+      write(set, os);
+    }
+  }
+
+  static void write(SubstringSet set, OutputStream os) throws IOException {
+    SubstringSet.NodeStore nodes = set.nodes;
+    // slots freed by SubstringSet.remove are not reachable and not written
+    int nodeCount = nodes.liveCount();
+
+    // BFS numbering : order[newId] = node id in the store
+    int[] order = new int[nodeCount];
+    int[] childStart = new int[nodeCount + 1];
+    int head = 0;
+    int tail = 0;
+    order[tail++] = set.root;
+    childStart[0] = 1;
+    while(head < tail) {
+      int n = order[head++];
+      for(int c = nodes.firstChild(n); c != SubstringSet.NIL; c = nodes.nextSibling(c)) {
+        order[tail++] = c;
+      }
+      childStart[head] = tail;
+    }
+    int bigCount = 0;
+    for(int i = 0; i < nodeCount; ++i) {
+      if(nodes.count(order[i]) > Integer.MAX_VALUE) {
+        ++bigCount;
+      }
+    }
+
+    Alphabet alphabet = set.alphabet;
+    int labelBits = (alphabet == null) ? 16 : alphabet.bits();
+    checkSize(fileBytes(nodeCount, bigCount, labelBits, (alphabet == null) ? 0 : alphabet.size()));
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(nodeCount);
+    out.writeInt(bigCount);
+    out.writeInt(labelBits);
+    out.writeInt((alphabet == null) ? 0 : alphabet.size());
+    for(int start : childStart) {
+      out.writeInt(start);
+    }
+    long[] big = new long[bigCount];
+    int bigSize = 0;
+    for(int i = 0; i < nodeCount; ++i) {
+      long count = nodes.count(order[i]);
+      if(count > Integer.MAX_VALUE) {
+        big[bigSize] = count;
+        out.writeInt(~bigSize++);
+      } else {
+        out.writeInt((int) count);
+      }
+    }
+    for(long count : big) {
+      out.writeLong(count);
+    }
+    long[] labels = new long[SubstringSet.NodeStore.packedWords(nodeCount, labelBits)];
+    for(int i = 0; i < nodeCount; ++i) {
+      SubstringSet.NodeStore.pack(labels, labelBits, i, nodes.label(order[i]));
+    }
+    for(long word : labels) {
+      out.writeLong(word);
+    }
+    for(int i = 0; alphabet != null && i < alphabet.size(); ++i) {
+      out.writeChar(alphabet.symbol(i));
+    }
+    out.flush();
+  }
+
+  // -----------------
+  // Internal : GET
+  // -----------------
+  String find(long order) {
+    if(order < 1 || order > size()) {
+      return null;
+    }
+
+    StringBuilder b = new StringBuilder();
+    int n = 0;
+    long k = order + 1; // the root itself 'counts' as the empty string
+    while(k > 1) {
+      --k;
+      int end = childStart.get(n + 1);
+      for(int c = childStart.get(n); c < end; ++c) {
+        long count = count(c);
+        if(k > count) {
+          k -= count;
+          continue;
+        }
+        b.append(label(c));
+        n = c;
+        break;
+      }
+    }
+    return b.toString();
+  }
+
+  char label(int n) {
+    char c = code(n);
+    return (alphabet == null) ? c : alphabet[c];
+  }
+
+  // The raw label : the char itself, or its code with an alphabet
+  char code(int n) {
+    long bit = (long) n * labelBits;
+    int word = (int) (bit >>> 6);
+    int shift = (int) bit & 63;
+    long v = labels.get(word) >>> shift;
+    if(shift + labelBits > 64) {
+      v |= labels.get(word + 1) << (64 - shift);
+    }
+    return (char) (v & ((1L << labelBits) - 1));
+  }
+
+  long count(int n) {
+    int c = counts.get(n);
+    return (c >= 0) ? c : bigCounts.get(~c);
+  }
+
+  static long fileBytes(int nodeCount, int bigCount, int labelBits, int alphabetSize) {
+    return HEADER_BYTES + 4L * (nodeCount + 1) + 4L * nodeCount + 8L * bigCount
+        + 8L * SubstringSet.NodeStore.packedWords(nodeCount, labelBits) + 2L * alphabetSize;
+  }
+
+  static void checkSize(long bytes) throws IOException {
+    if(bytes > MAX_BYTES) {
+      throw new IOException(String.format("Index of %d bytes does not fit in a single mapping of at most %d bytes",
+          bytes, MAX_BYTES));
+    }
+  }
+
+  static ByteBuffer slice(ByteBuffer buf, int offset, int length) {
+    ByteBuffer dup = buf.duplicate();
+    dup.position(offset);
+    dup.limit(offset + length);
+    return dup.slice();
+  }
+}
@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Path-compressed ( radix ) suffix-trie implementation of SubstringIndex.
+ *
+ * Reasoning :
+ * In SubstringSet every character of every suffix is its own node, but below the first few levels the
+ * trie is mostly long single-child chains. find() then spends one getPartition call and one append per
+ * character of such a chain. Compressing every chain into a single edge labelled with a range of one of
+ * the input strings bounds the node count by 2 * (number of suffixes) = O(n * m) instead of O(n * m^2),
+ * and lets find() step over a whole edge at once.
+ *
+ * Design :
+ * a. Edges
+ * - Every node except the root owns the edge leading into it, stored as ( input id, start, end ) into
+ *   the retained input strings. Children are kept in a sibling list sorted by the first character of
+ *   their edge, just like SubstringSet.NodeStore.
+ * - count(v) is the number of distinct substrings whose path ends on the edge into v or anywhere below :
+ *     count(v) = edgeLength(v) + sum(count(w)) for all children w of v
+ *
+ * b. Insert
+ * - A suffix walks down as far as it matches. If it runs out inside an edge nothing is added. Otherwise
+ *   the remaining characters become one new leaf edge, after splitting the edge it diverged on. Splitting
+ *   does not change any count above the split, so exactly the length of the new leaf edge is added to
+ *   every node on the path.
+ *
+ * c. Order query
+ * - Same partition walk as SubstringSet.find, but when k <= edgeLength(child) the answer ends inside the
+ *   edge and is emitted directly, otherwise the whole edge is appended and skipped with k -= edgeLength.
+ *
+ * Eg. { "abcd" } =>
+ *                  root(10)
+ *    abcd(4)    bcd(3)    cd(2)    d(1)
+ *  4 nodes instead of the 10 of the uncompressed trie
+ *  find(6) => 'abcd' has count 4 < 6, k=2 => 'bcd' has count 3 >= 2, k=2 <= edge length 3 => 'bc'
+ */
+public class RadixSubstringSet implements SubstringIndex {
+
+  static final int NIL = -1;
+
+  final List<char[]> sources;
+  final int root;
+  // node store : edge label ( source, [start, end) ), subtree count and sibling links
+  int[] edgeSource;
+  int[] edgeStart;
+  int[] edgeEnd;
+  long[] counts;
+  int[] firstChild;
+  int[] nextSibling;
+  int size;
+  // re-usable ancestor buffer for insertSuffix
+  int[] path;
+
+  public RadixSubstringSet() {
+    this.sources = new ArrayList<>();
+    this.edgeSource = new int[16];
+    this.edgeStart = new int[16];
+    this.edgeEnd = new int[16];
+    this.counts = new long[16];
+    this.firstChild = new int[16];
+    this.nextSibling = new int[16];
+    this.size = 0;
+    this.path = new int[16];
+    this.root = create(NIL, 0, 0);
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public long insert(String s) {
+    int id = sources.size();
+    sources.add(s.toCharArray());
+    long count = 0;
+    for(int i = 0; i < s.length(); ++i) {
+      count += insertSuffix(id, i, s.length());
+    }
+    if(count == 0) {
+      // no edge refers to it
+      sources.remove(id);
+    }
+    return count;
+  }
+
+  public long size() {
+    return counts[root];
+  }
+
+  public String get(long k) {
+    return find(k);
+  }
+
+  public int nodeCount() {
+    return size;
+  }
+
+  // -----------------
+  // Internal : PUT
+  // -----------------
+  // Inserts the suffix [st, en) of source id, returns the number of new distinct substrings
+  int insertSuffix(int id, int st, int en) {
+    char[] buf = sources.get(id);
+    if(path.length < en - st + 1) {
+      path = new int[en - st + 1 + ((en - st + 1) >> 1)];
+    }
+
+    int depth = 0;
+    int n = root;
+    int i = st;
+    int added = 0;
+    while(i < en) {
+      path[depth++] = n;
+      char c = buf[i];
+      int prev = NIL;
+      int child = firstChild[n];
+      while(child != NIL && firstChar(child) < c) {
+        prev = child;
+        child = nextSibling[child];
+      }
+      if(child == NIL || firstChar(child) != c) {
+        int leaf = create(id, i, en);
+        link(n, prev, leaf, child);
+        added = en - i;
+        break;
+      }
+
+      char[] edge = sources.get(edgeSource[child]);
+      int a = edgeStart[child];
+      int b = edgeEnd[child];
+      int j = 1;
+      while(a + j < b && i + j < en && edge[a + j] == buf[i + j]) {
+        ++j;
+      }
+      if(a + j == b) {
+        n = child;
+        i += j;
+        continue;
+      }
+      if(i + j == en) {
+        // the suffix ends inside the edge, it is already present
+        break;
+      }
+
+      // diverges inside the edge : split it at j and hang the rest of the suffix below the split
+      int mid = create(edgeSource[child], a, a + j);
+      counts[mid] = counts[child];
+      link(n, prev, mid, nextSibling[child]);
+      edgeStart[child] = a + j;
+      counts[child] -= j;
+      int leaf = create(id, i + j, en);
+      if(buf[i + j] < edge[a + j]) {
+        firstChild[mid] = leaf;
+        nextSibling[leaf] = child;
+        nextSibling[child] = NIL;
+      } else {
+        firstChild[mid] = child;
+        nextSibling[child] = leaf;
+      }
+      path[depth++] = mid;
+      added = en - i - j;
+      break;
+    }
+
+    if(added > 0) {
+      for(int d = 0; d < depth; ++d) {
+        counts[path[d]] += added;
+      }
+    }
+    return added;
+  }
+
+  // Puts n between prev and next in parent's sibling list
+  void link(int parent, int prev, int n, int next) {
+    nextSibling[n] = next;
+    if(prev == NIL) {
+      firstChild[parent] = n;
+    } else {
+      nextSibling[prev] = n;
+    }
+  }
+
+  int create(int source, int start, int end) {
+    if(size == counts.length) {
+      grow();
+    }
+    int n = size++;
+    edgeSource[n] = source;
+    edgeStart[n] = start;
+    edgeEnd[n] = end;
+    counts[n] = end - start;
+    firstChild[n] = NIL;
+    nextSibling[n] = NIL;
+    return n;
+  }
+
+  void grow() {
+    int capacity = counts.length + (counts.length >> 1) + 16;
+    edgeSource = Arrays.copyOf(edgeSource, capacity);
+    edgeStart = Arrays.copyOf(edgeStart, capacity);
+    edgeEnd = Arrays.copyOf(edgeEnd, capacity);
+    counts = Arrays.copyOf(counts, capacity);
+    firstChild = Arrays.copyOf(firstChild, capacity);
+    nextSibling = Arrays.copyOf(nextSibling, capacity);
+  }
+
+  char firstChar(int n) {
+    return sources.get(edgeSource[n])[edgeStart[n]];
+  }
+
+  int edgeLength(int n) {
+    return edgeEnd[n] - edgeStart[n];
+  }
+
+  // -----------------
+  // Internal : GET
+  // -----------------
+  String find(long order) {
+    if(order < 1 || order > size()) {
+      return null;
+    }
+
+    StringBuilder b = new StringBuilder();
+    int n = root;
+    long k = order;
+    while(true) {
+      int c = firstChild[n];
+      while(k > counts[c]) {
+        k -= counts[c];
+        c = nextSibling[c];
+      }
+      char[] edge = sources.get(edgeSource[c]);
+      int length = edgeLength(c);
+      if(k <= length) {
+        return b.append(edge, edgeStart[c], (int) k).toString();
+      }
+      b.append(edge, edgeStart[c], length);
+      k -= length;
+      n = c;
+    }
+  }
+}
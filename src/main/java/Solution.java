@@ -1,254 +1,550 @@
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.function.Consumer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 public class Solution {
 
   public static void main(String[] args) {
     try {
-      final SubstringSet s = new SubstringSet();
-
-      final BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-      //final BufferedReader br = new BufferedReader(
-      //    new InputStreamReader(
-      //        new FileInputStream("/tmp/test-case-5")));
-      String input = null;
+      // --stats : report the construction / query timings on stderr
+      final boolean stats = Arrays.asList(args).contains("--stats");
+      // --pipelined : overlap parsing, building and answering on every core, see Pipeline
+      final boolean pipelined = Arrays.asList(args).contains("--pipelined");
+      final FastReader in = new FastReader(System.in);
+      //final FastReader in = new FastReader(new FileInputStream("/tmp/test-case-5"));
+      final FastWriter out = new FastWriter(System.out);
+      if(pipelined) {
+        Pipeline.run(in, out, stats, Runtime.getRuntime().availableProcessors());
+        return;
+      }
 
       LocalDateTime st = LocalDateTime.now();
-      // Input
-      input = br.readLine();
-      int nStrings = Integer.parseInt(input);
+      // Input : every string is known before the first query, so build the offline index
+      int nStrings = in.readInt();
       int totalStringLength = 0;
+      List<String> strings = new ArrayList<>(nStrings);
       for(int i = 0; i < nStrings; ++i) {
-        input = br.readLine();
+        String input = in.readLine();
         totalStringLength += input.length();
-        // System.out.println(String.format("Inserting : %s", input));
-        s.insert(input);
+        strings.add(input);
       }
+      final SuffixArraySet s = SuffixArraySet.of(strings);
       LocalDateTime insertEnd = LocalDateTime.now();
 
       // Query
-      input = br.readLine();
-      int nQueries = Integer.parseInt(input);
+      int nQueries = in.readInt();
       for(int i = 0; i < nQueries; ++i) {
-        input = br.readLine();
-        int query = Integer.parseInt(input);
+        int query = in.readInt();
         String result = s.find(query);
-        System.out.println((result != null) ? result : "INVALID");
+        out.println((result != null) ? result : "INVALID");
       }
+      out.flush();
       LocalDateTime queryEnd = LocalDateTime.now();
-      //System.out.println(
-      //String.format("NumStrings=%d, AvgStringLength=%.2f, ConstructionTimeMs=%d, NumQueries=%d, TotalQueryTimeMs=%d",
-      //    nStrings,
-      //    ((double) totalStringLength / nStrings),
-      //    Duration.between(st, insertEnd).toMillis(),
-      //    nQueries,
-      //    Duration.between(insertEnd, queryEnd).toMillis()));
+      if(stats) {
+        System.err.println(
+        String.format("NumStrings=%d, AvgStringLength=%.2f, ConstructionTimeMs=%d, NumQueries=%d, TotalQueryTimeMs=%d",
+            nStrings,
+            ((double) totalStringLength / nStrings),
+            Duration.between(st, insertEnd).toMillis(),
+            nQueries,
+            Duration.between(insertEnd, queryEnd).toMillis()));
+      }
     } catch(Exception e){
       e.printStackTrace();
     }
   }
 
-  static class SubstringSet {
-
-    final SuffixTrieNode root;
+  // -----------------
+  // Byte-level I/O
+  // -----------------
+  // Reads lines straight from a direct buffer over the input channel. Input is ASCII, so a line is
+  // decoded as Latin-1 and ints are parsed from the bytes without creating a String.
+  static class FastReader {
+    final ReadableByteChannel ch;
+    final ByteBuffer buf;
+    byte[] line;
+    int lineLength;
 
-    public SubstringSet() {
-      this.root = new SuffixTrieNode('.', new TreeMap<>(), 0);
+    FastReader(InputStream is) {
+      this.ch = Channels.newChannel(is);
+      this.buf = ByteBuffer.allocateDirect(1 << 16);
+      this.buf.flip();
+      this.line = new byte[256];
     }
 
-    // -----------------
-    // public API
-    // -----------------
-    public int insert(String s) {
-      return insertSuffixesOf(s);
+    int read() throws IOException {
+      if(!buf.hasRemaining()) {
+        buf.clear();
+        int n;
+        do {
+          n = ch.read(buf);
+        } while(n == 0);
+        buf.flip();
+        if(n < 0) {
+          return -1;
+        }
+      }
+      return buf.get() & 0xff;
     }
 
-    public int size() {
-      return root.getCount();
+    // Reads the next line ( without the line terminator ) into 'line', false at end of input
+    boolean nextLine() throws IOException {
+      lineLength = 0;
+      int c = read();
+      if(c < 0) {
+        return false;
+      }
+      while(c >= 0 && c != '\n') {
+        if(lineLength == line.length) {
+          line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[lineLength++] = (byte) c;
+        c = read();
+      }
+      if(lineLength > 0 && line[lineLength - 1] == '\r') {
+        --lineLength;
+      }
+      return true;
     }
 
-    public String get(int k) {
-      return find(k);
+    String readLine() throws IOException {
+      return nextLine() ? new String(line, 0, lineLength, StandardCharsets.ISO_8859_1) : null;
     }
 
-    // -----------------
-    // Internal : PUT
-    // -----------------
-    int insertSuffixesOf(String s) {
-      // ( Inefficient First Pass )
-      // char[] buf = s.toCharArray();
-      // for(int j = 1; j <= s.length(); ++j) {
-      //   for(int i = 0; i <= (s.length() - j); ++i) {
-      //     // System.out.println(String.format("Inserting : %s", s.substring(i, i+j)));
-      //     insertSuffix(buf, i, i + j - 1);
-      //   }
-      // }
-      int count = 0;
-      char[] buf = s.toCharArray();
-      for(int i = 0; i < s.length(); ++i) {
-        // System.out.println(String.format("Inserting : %s", s.substring(i, s.length())));
-        count += insertSuffix(buf, i, s.length() - 1);
+    // A line holding one int, in the format of Integer.parseInt apart from surrounding whitespace
+    int readInt() throws IOException {
+      if(!nextLine()) {
+        throw new EOFException();
+      }
+      int from = 0;
+      int to = lineLength;
+      while(from < to && line[from] <= ' ') {
+        ++from;
+      }
+      while(to > from && line[to - 1] <= ' ') {
+        --to;
+      }
+      int i = from;
+      boolean negative = (i < to && line[i] == '-');
+      if(i < to && (line[i] == '-' || line[i] == '+')) {
+        ++i;
+      }
+      if(i == to) {
+        throw notAnInt(from, to);
       }
-      return count;
+      // accumulated negatively, as Integer.MIN_VALUE has no positive counterpart
+      int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+      int value = 0;
+      for(; i < to; ++i) {
+        int digit = line[i] - '0';
+        if(digit < 0 || digit > 9 || value < limit / 10) {
+          throw notAnInt(from, to);
+        }
+        value *= 10;
+        if(value < limit + digit) {
+          throw notAnInt(from, to);
+        }
+        value -= digit;
+      }
+      return negative ? value : -value;
     }
 
-    int insertSuffix(String suffix) {
-      return insertSuffixAt(root, suffix.toCharArray(), 0, suffix.length() - 1);
+    NumberFormatException notAnInt(int from, int to) {
+      return new NumberFormatException(String.format("Not an int : \"%s\"",
+          new String(line, from, to - from, StandardCharsets.ISO_8859_1)));
     }
+  }
 
-    int insertSuffix(char[] suffix, int st, int en) {
-      assert(st <= en);
-      return insertSuffixAt(root, suffix, st, en);
+  // Single output sink, written out in 64k chunks and flushed once at the end
+  static class FastWriter {
+    final OutputStream os;
+    final byte[] buf;
+    int pos;
+
+    FastWriter(OutputStream os) {
+      this.os = os;
+      this.buf = new byte[1 << 16];
     }
 
-    // Impl uses stack recursion impl to 'conditionally' bubble up count
-    int insertSuffixAt(SuffixTrieNode n, char[] buf, int idx, int en) {
-      if(idx > en) {
-        return 0;
+    @SuppressWarnings("deprecation")
+    void println(String s) throws IOException {
+      int length = s.length();
+      for(int i = 0; i < length; ) {
+        if(pos == buf.length) {
+          drain();
+        }
+        int n = Math.min(length - i, buf.length - pos);
+        // Latin-1 : low byte of each char, copied in bulk
+        s.getBytes(i, i + n, buf, pos);
+        pos += n;
+        i += n;
+      }
+      if(pos == buf.length) {
+        drain();
       }
+      buf[pos++] = '\n';
+    }
+
+    void drain() throws IOException {
+      os.write(buf, 0, pos);
+      pos = 0;
+    }
+
+    void flush() throws IOException {
+      drain();
+      os.flush();
+    }
+  }
+
+  // -----------------
+  // Pipelined driver
+  // -----------------
+  // Parsing, building and answering overlap :
+  // - The main thread parses the strings and hands them to the build on the pool. The suffix array is
+  //   offline ( it needs every string ), so what overlaps with the build is parsing the queries.
+  // - Every CHUNK parsed queries become one task that runs on the pool as soon as the index is built
+  //   and finds their answers. The index is read-only once built, so the tasks share it without locking.
+  //   The answers are printed by the main thread, straight into the output buffer, as formatting them
+  //   per task would copy all the output one more time.
+  // - The chunk futures are queued in input order, and that queue is the reorder buffer : a chunk is
+  //   written only once it and every chunk before it are done, whatever order the workers finish in.
+  //   Done chunks at the head are written out while parsing goes on. At most PENDING_PER_THREAD chunks
+  //   per thread are pending, past that parsing waits for the head chunk : the answers can be much
+  //   larger than the queries, and holding all of them would only churn the heap.
+  static class Pipeline {
 
-      SuffixTrieNode next = null;
-      boolean insertedNew = false;
-      char c = buf[idx];
-      if(n.getChildren().containsKey(c)) {
-        next = n.getChildren().get(c);
-      } else {
-        next = SuffixTrieNode.createFor(c);
-        n.getChildren().put(c, next);
-        insertedNew = true;
+    static final int CHUNK = 1024;
+    static final int PENDING_PER_THREAD = 4;
+
+    static void run(FastReader in, FastWriter out, boolean stats, int threads) throws IOException {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        long st = System.nanoTime();
+        int nStrings = in.readInt();
+        int totalStringLength = 0;
+        List<String> strings = new ArrayList<>(nStrings);
+        for(int i = 0; i < nStrings; ++i) {
+          String input = in.readLine();
+          totalStringLength += input.length();
+          strings.add(input);
+        }
+        final long[] builtAt = new long[1];
+        CompletableFuture<SuffixArraySet> index = CompletableFuture.supplyAsync(() -> {
+          SuffixArraySet s = SuffixArraySet.of(strings);
+          builtAt[0] = System.nanoTime();
+          return s;
+        }, pool);
+
+        int nQueries = in.readInt();
+        Deque<CompletableFuture<String[]>> pending = new ArrayDeque<>();
+        for(int i = 0; i < nQueries; i += CHUNK) {
+          int[] queries = new int[Math.min(CHUNK, nQueries - i)];
+          for(int j = 0; j < queries.length; ++j) {
+            queries[j] = in.readInt();
+          }
+          pending.add(index.thenApplyAsync(s -> answer(s, queries), pool));
+          while(!pending.isEmpty() && (pending.peek().isDone() || pending.size() > PENDING_PER_THREAD * threads)) {
+            print(out, pending.poll().join());
+          }
+        }
+        while(!pending.isEmpty()) {
+          print(out, pending.poll().join());
+        }
+        out.flush();
+        index.join();
+        long end = System.nanoTime();
+        if(stats) {
+          System.err.println(
+          String.format("NumStrings=%d, AvgStringLength=%.2f, ConstructionTimeMs=%d, NumQueries=%d, TotalQueryTimeMs=%d, Threads=%d",
+              nStrings,
+              ((double) totalStringLength / nStrings),
+              (builtAt[0] - st) / 1_000_000,
+              nQueries,
+              (end - builtAt[0]) / 1_000_000,
+              threads));
+        }
+      } finally {
+        pool.shutdown();
       }
+    }
 
-      int added = insertSuffixAt(next, buf, idx + 1, en);
-      if(insertedNew) {
-        ++added;
+    static String[] answer(SuffixArraySet s, int[] queries) {
+      String[] results = new String[queries.length];
+      for(int i = 0; i < queries.length; ++i) {
+        results[i] = s.find(queries[i]);
       }
-      if(added > 0) {
-        n.accumulateCountBy(added);
+      return results;
+    }
+
+    static void print(FastWriter out, String[] results) throws IOException {
+      for(String result : results) {
+        out.println((result != null) ? result : "INVALID");
       }
-      return added;
+    }
+  }
+
+  // Offline suffix-array + LCP index, see SuffixArraySet.java for the design notes
+  static class SuffixArraySet {
+
+    final char[] text;
+    final int[] sa;
+    final int[] lcp;
+    final int[] cum;
+
+    SuffixArraySet(char[] text, int[] sa, int[] lcp, int[] cum) {
+      this.text = text;
+      this.sa = sa;
+      this.lcp = lcp;
+      this.cum = cum;
     }
 
     // -----------------
-    // Internal : GET
+    // public API
     // -----------------
-    String find(int order) {
-      if(order < 1 || order > size()) {
-        return null;
+    public static SuffixArraySet of(List<String> strings) {
+      return build(strings);
+    }
+
+    public int size() {
+      return (cum.length == 0) ? 0 : cum[cum.length - 1];
+    }
+
+    public String get(int k) {
+      return find(k);
+    }
+
+    // -----------------
+    // Internal : BUILD
+    // -----------------
+    static SuffixArraySet build(List<String> strings) {
+      int n = strings.size();
+      int length = n;
+      for(String s : strings) {
+        length += s.length();
       }
 
-      StringBuilder b = new StringBuilder();
-      PartitionResult start = getPartition(root, order);
-      SuffixTrieNode n = start.getPartition();
-      int k = order - start.getNumElementsBeforePartition();
-      while(true) {
-        b.append(n.getC());
-        if(k == 1) {
-          return b.toString();
+      // dense ranks of the characters that are present
+      boolean[] present = new boolean[Character.MAX_VALUE + 1];
+      for(String s : strings) {
+        for(int i = 0; i < s.length(); ++i) {
+          present[s.charAt(i)] = true;
+        }
+      }
+      int[] rank = new int[Character.MAX_VALUE + 1];
+      int alphabet = 0;
+      for(int c = 0; c <= Character.MAX_VALUE; ++c) {
+        if(present[c]) {
+          rank[c] = n + alphabet++;
         }
-        PartitionResult partition = getPartition(n, k-1);
-        n = partition.getPartition();
-        k -= (partition.getNumElementsBeforePartition() + 1);
       }
-    }
 
-    PartitionResult getPartition(SuffixTrieNode n, int k) {
-      int numElementsBeforePartition = 0;
-      Map<Character, SuffixTrieNode> children = n.getChildren();
-      Iterator<Character> i = n.getChildren().keySet().iterator();
-      while(i.hasNext()) {
-        SuffixTrieNode next = children.get(i.next());
-        if(numElementsBeforePartition + next.getCount() < k) {
-          numElementsBeforePartition += next.getCount();
-          continue;
+      char[] text = new char[length];
+      int[] t = new int[length];
+      int p = 0;
+      for(int i = 0; i < n; ++i) {
+        String s = strings.get(i);
+        for(int j = 0; j < s.length(); ++j, ++p) {
+          text[p] = s.charAt(j);
+          t[p] = rank[s.charAt(j)];
         }
-        return new PartitionResult(numElementsBeforePartition, next);
+        t[p++] = i;
       }
-      return new PartitionResult(numElementsBeforePartition, null);
-    }
 
-    class PartitionResult {
-      final int numElementsBeforePartition;
-      final SuffixTrieNode partition;
-       PartitionResult(int numElementsBeforePartition, SuffixTrieNode partition) {
-       this.numElementsBeforePartition = numElementsBeforePartition;
-       this.partition = partition;
-       }
-       public int getNumElementsBeforePartition() {
-       return numElementsBeforePartition;
-       }
-       public SuffixTrieNode getPartition() {
-       return partition;
-       }
+      int[] sa = suffixArray(t, n + alphabet - 1);
+      int[] lcp = lcpArray(t, sa);
+
+      // validLength(p) = distance from p to the next separator
+      int[] validLength = new int[length];
+      for(int i = length - 1; i >= 0; --i) {
+        validLength[i] = (t[i] < n) ? 0 : validLength[i + 1] + 1;
+      }
+      int[] cum = new int[length];
+      int total = 0;
+      for(int j = 0; j < length; ++j) {
+        total += validLength[sa[j]] - lcp[j];
+        cum[j] = total;
+      }
+      return new SuffixArraySet(text, sa, lcp, cum);
     }
 
-    // -----------------
-    // Internal : Core Data-Structures
-    // -----------------
-    static class SuffixTrieNode {
-      final Character c;
-      final TreeMap<Character, SuffixTrieNode> children;
-      int count;
+    // SA-IS ( Nong, Zhang & Chan ), s[i] in [0, upper]
+    static int[] suffixArray(int[] s, int upper) {
+      int n = s.length;
+      if(n == 0) {
+        return new int[0];
+      }
+      if(n == 1) {
+        return new int[] { 0 };
+      }
+      if(n == 2) {
+        return (s[0] < s[1]) ? new int[] { 0, 1 } : new int[] { 1, 0 };
+      }
 
-      public void accumulateCountBy(int k) {
-        count += k;
+      int[] sa = new int[n];
+      boolean[] ls = new boolean[n];
+      for(int i = n - 2; i >= 0; --i) {
+        ls[i] = (s[i] == s[i + 1]) ? ls[i + 1] : (s[i] < s[i + 1]);
+      }
+      int[] sumL = new int[upper + 1];
+      int[] sumS = new int[upper + 1];
+      for(int i = 0; i < n; ++i) {
+        if(!ls[i]) {
+          ++sumS[s[i]];
+        } else {
+          ++sumL[s[i] + 1];
+        }
+      }
+      for(int i = 0; i <= upper; ++i) {
+        sumS[i] += sumL[i];
+        if(i < upper) {
+          sumL[i + 1] += sumS[i];
+        }
       }
 
-      static public SuffixTrieNode createFor(char c) {
-        return new SuffixTrieNode(c, new TreeMap<>(), 1);
+      int[] lmsMap = new int[n + 1];
+      Arrays.fill(lmsMap, -1);
+      int m = 0;
+      for(int i = 1; i < n; ++i) {
+        if(!ls[i - 1] && ls[i]) {
+          lmsMap[i] = m++;
+        }
+      }
+      int[] lms = new int[m];
+      for(int i = 1, j = 0; i < n; ++i) {
+        if(!ls[i - 1] && ls[i]) {
+          lms[j++] = i;
+        }
       }
 
-       private SuffixTrieNode(Character c, TreeMap<Character, SuffixTrieNode> children, int count) {
-       this.c = c;
-       this.children = children;
-       this.count = count;
-       }
-       public Character getC() {
-       return c;
-       }
-       public TreeMap<Character, SuffixTrieNode> getChildren() {
-       return children;
-       }
-       public int getCount() {
-       return count;
-       }
+      induce(s, sa, ls, sumS, sumL, lms);
+
+      if(m > 0) {
+        int[] sortedLms = new int[m];
+        for(int i = 0, j = 0; i < n; ++i) {
+          if(lmsMap[sa[i]] != -1) {
+            sortedLms[j++] = sa[i];
+          }
+        }
+        int[] recS = new int[m];
+        int recUpper = 0;
+        recS[lmsMap[sortedLms[0]]] = 0;
+        for(int i = 1; i < m; ++i) {
+          int l = sortedLms[i - 1];
+          int r = sortedLms[i];
+          int endL = (lmsMap[l] + 1 < m) ? lms[lmsMap[l] + 1] : n;
+          int endR = (lmsMap[r] + 1 < m) ? lms[lmsMap[r] + 1] : n;
+          boolean same = true;
+          if(endL - l != endR - r) {
+            same = false;
+          } else {
+            while(l < endL && s[l] == s[r]) {
+              ++l;
+              ++r;
+            }
+            if(l == n || s[l] != s[r]) {
+              same = false;
+            }
+          }
+          if(!same) {
+            ++recUpper;
+          }
+          recS[lmsMap[sortedLms[i]]] = recUpper;
+        }
+
+        int[] recSa = suffixArray(recS, recUpper);
+        for(int i = 0; i < m; ++i) {
+          sortedLms[i] = lms[recSa[i]];
+        }
+        induce(s, sa, ls, sumS, sumL, sortedLms);
+      }
+      return sa;
     }
 
-    // -----------------
-    // Debug Utilities
-    // -----------------
-    public void show() {
-      visitDfs(root, (n) -> {
-        System.out.println(String.format("%c|%d", n.getC(), n.getCount()));
-      });
-      visitBfs(root, (n) -> {
-        StringBuilder b = new StringBuilder();
-      });
+    static void induce(int[] s, int[] sa, boolean[] ls, int[] sumS, int[] sumL, int[] lms) {
+      int n = s.length;
+      Arrays.fill(sa, -1);
+      int[] buf = sumS.clone();
+      for(int d : lms) {
+        if(d != n) {
+          sa[buf[s[d]]++] = d;
+        }
+      }
+      buf = sumL.clone();
+      sa[buf[s[n - 1]]++] = n - 1;
+      for(int i = 0; i < n; ++i) {
+        int v = sa[i];
+        if(v >= 1 && !ls[v - 1]) {
+          sa[buf[s[v - 1]]++] = v - 1;
+        }
+      }
+      buf = sumL.clone();
+      for(int i = n - 1; i >= 0; --i) {
+        int v = sa[i];
+        if(v >= 1 && ls[v - 1]) {
+          sa[--buf[s[v - 1] + 1]] = v - 1;
+        }
+      }
     }
 
-    void visitDfs(SuffixTrieNode n, Consumer<SuffixTrieNode> v) {
-      v.accept(n);
-      for(SuffixTrieNode c : n.getChildren().values()) {
-        visitDfs(c, v);
+    // Kasai et al. lcp[j] = LCP(sa[j - 1], sa[j]). Never runs across a separator as they are unique.
+    static int[] lcpArray(int[] s, int[] sa) {
+      int n = s.length;
+      int[] rnk = new int[n];
+      for(int i = 0; i < n; ++i) {
+        rnk[sa[i]] = i;
       }
+      int[] lcp = new int[n];
+      int h = 0;
+      for(int i = 0; i < n; ++i) {
+        if(h > 0) {
+          --h;
+        }
+        if(rnk[i] == 0) {
+          h = 0;
+          continue;
+        }
+        int j = sa[rnk[i] - 1];
+        while(i + h < n && j + h < n && s[i + h] == s[j + h]) {
+          ++h;
+        }
+        lcp[rnk[i]] = h;
+      }
+      return lcp;
     }
 
-    void visitBfs(SuffixTrieNode n, Consumer<SuffixTrieNode> v) {
-      Deque<SuffixTrieNode> q = new ArrayDeque<>();
-      q.add(n);
-      while(!q.isEmpty()) {
-        SuffixTrieNode next = q.poll();
-        v.accept(next);
-        next.getChildren().values().forEach(q::push);
+    // -----------------
+    // Internal : GET
+    // -----------------
+    String find(int order) {
+      if(order < 1 || order > size()) {
+        return null;
+      }
+      int lo = 0;
+      int hi = cum.length - 1;
+      while(lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if(cum[mid] < order) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
       }
+      int before = (lo == 0) ? 0 : cum[lo - 1];
+      return new String(text, sa[lo], lcp[lo] + (order - before));
     }
   }
 }
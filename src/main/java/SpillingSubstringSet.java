@@ -0,0 +1,251 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.Getter;
+
+/**
+ * SubstringIndex with a bounded number of trie nodes on the heap, the rest of the trie spilled to disk.
+ *
+ * Reasoning :
+ * A SubstringSet has O(n * m^2) nodes and all of them live on the heap, so a corpus either fits or the build
+ * dies with an OutOfMemoryError. But the suffixes starting with different characters end up in disjoint
+ * subtrees of the root ( see SubstringSet 'PARALLEL BUILD' ), so the trie can be cut into one independent
+ * shard per leading character, and only the shards being inserted into need to be on the heap.
+ *
+ * Design :
+ * - Every leading character c has its own SubstringSet shard, holding the suffixes that start with c, ie.
+ *   the root and the single subtree of c. The shards are kept in character order, which is the order of
+ *   their subtrees under the root, so get(k) skips the sizes of the shards before the one k falls into.
+ * - A shard is either resident ( a SubstringSet ) or spilled ( a file in the MappedSubstringIndex format ).
+ *   When the resident nodes exceed nodeBudget after an insert, the least recently used resident shards
+ *   are written out and dropped until the budget holds again. The shard being inserted into always stays,
+ *   so a single shard larger than the budget still builds, it just holds the heap alone.
+ * - An insert into a spilled shard loads it back with MappedSubstringIndex.load ( a sequential read, no
+ *   re-building ). insertAll inserts shard by shard, so every shard is loaded and spilled at most once
+ *   per call, however many strings start suffixes in it : prefer it for bulk builds.
+ * - A query into a spilled shard reads the mapped file directly. The last MAPPED_CACHE mappings are kept
+ *   open and the OS page cache keeps their hot pages in memory, off the heap. An open mapping only costs
+ *   address space, while re-opening one costs more than the query itself, so the cache is large enough
+ *   for every leading character of a typical alphabet.
+ * - A spill writes a temporary file and moves it over the previous one, so a mapping still open on the
+ *   old file keeps reading the old, complete version instead of a truncated one.
+ *
+ * Costs : a spill or a load is O(shard nodes), and an insert into a spilled shard pays both. Queries into a
+ * spilled shard walk the mapped file, no ChildIndex. Not thread-safe, like SubstringSet.
+ *
+ * Eg. new SpillingSubstringSet(dir, 50_000_000) keeps at most ~50M nodes ( ~1GB ) on the heap.
+ */
+public class SpillingSubstringSet implements SubstringIndex, Closeable {
+
+  static final int MAPPED_CACHE = 64;
+
+  final Path dir;
+  final int nodeBudget;
+  // shards by leading character, in lexicographic order
+  final TreeMap<Character, Shard> shards;
+  // resident shards, least recently used first
+  final LinkedHashMap<Character, Shard> resident;
+  // open mappings of spilled shards, least recently used first
+  final LinkedHashMap<Character, MappedSubstringIndex> mapped;
+  long size;
+  @Getter
+  int residentNodes;
+  @Getter
+  long spills;
+  @Getter
+  long loads;
+
+  /**
+   * @param dir        directory for the spilled shards, one file per leading character
+   * @param nodeBudget trie nodes kept on the heap, ~20 bytes each
+   */
+  public SpillingSubstringSet(Path dir, int nodeBudget) {
+    if(nodeBudget < 1) {
+      throw new IllegalArgumentException(String.format("nodeBudget must be positive : %d", nodeBudget));
+    }
+    this.dir = dir;
+    this.nodeBudget = nodeBudget;
+    this.shards = new TreeMap<>();
+    this.resident = new LinkedHashMap<>(16, 0.75f, true);
+    this.mapped = new LinkedHashMap<Character, MappedSubstringIndex>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Character, MappedSubstringIndex> eldest) {
+        return size() > MAPPED_CACHE;
+      }
+    };
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public long insert(String s) {
+    return insertAll(Collections.singletonList(s));
+  }
+
+  /**
+   * Inserts all the strings, one shard at a time.
+   * @return the number of distinct substrings that were not present before
+   */
+  public long insertAll(Collection<String> strings) {
+    char[][] bufs = new char[strings.size()][];
+    int i = 0;
+    for(String s : strings) {
+      bufs[i++] = s.toCharArray();
+    }
+    // every char leads some suffix, the shards are visited in order
+    long added = 0;
+    for(char lead : SubstringSet.distinctChars(bufs)) {
+      added += insertShard(lead, bufs);
+    }
+    return added;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public String get(long k) {
+    if(k < 1 || k > size) {
+      return null;
+    }
+    for(Shard shard : shards.values()) {
+      if(k <= shard.size) {
+        return (shard.set != null) ? shard.set.get(k) : mapped(shard).get(k);
+      }
+      k -= shard.size;
+    }
+    throw new IllegalStateException("Shard sizes do not add up to size()");
+  }
+
+  /**
+   * Deletes the spilled shards. The set is empty afterwards.
+   */
+  public void close() throws IOException {
+    mapped.clear();
+    resident.clear();
+    for(Shard shard : shards.values()) {
+      Files.deleteIfExists(shard.file);
+    }
+    shards.clear();
+    size = 0;
+    residentNodes = 0;
+  }
+
+  // -----------------
+  // Internal : SHARDS
+  // -----------------
+  static final class Shard {
+    final char lead;
+    final Path file;
+    // null while spilled
+    SubstringSet set;
+    long size;
+    // resident and changed since the last spill
+    boolean dirty;
+
+    Shard(char lead, Path file) {
+      this.lead = lead;
+      this.file = file;
+    }
+  }
+
+  // Inserts the suffixes starting with lead of all the strings into lead's shard
+  long insertShard(char lead, char[][] bufs) {
+    Shard shard = acquire(lead);
+    SubstringSet set = shard.set;
+    int before = set.nodes.liveCount();
+    long added = 0;
+    for(char[] buf : bufs) {
+      for(int i = 0; i < buf.length; ++i) {
+        if(buf[i] == lead) {
+          added += set.insertSuffix(buf, i, set.lastOfSuffix(i, buf.length));
+        }
+      }
+    }
+    set.indexWideNodes();
+    residentNodes += set.nodes.liveCount() - before;
+    shard.size = set.size();
+    size += added;
+    shard.dirty |= (added > 0);
+    fitBudget(lead);
+    return added;
+  }
+
+  // The resident shard of lead, created or loaded back if needed
+  Shard acquire(char lead) {
+    Shard shard = shards.get(lead);
+    if(shard != null && shard.set != null) {
+      // marks it as the most recently used
+      resident.get(lead);
+      return shard;
+    }
+    if(shard == null) {
+      shard = new Shard(lead, dir.resolve(String.format("shard-%04x.ssix", (int) lead)));
+      shard.set = new SubstringSet();
+      shards.put(lead, shard);
+    } else {
+      shard.set = mapped(shard).load(Integer.MAX_VALUE);
+      ++loads;
+    }
+    resident.put(lead, shard);
+    residentNodes += shard.set.nodes.liveCount();
+    return shard;
+  }
+
+  // Spills the least recently used shards other than keep until the budget holds
+  void fitBudget(char keep) {
+    Iterator<Shard> lru = resident.values().iterator();
+    while(residentNodes > nodeBudget && lru.hasNext()) {
+      Shard shard = lru.next();
+      if(shard.lead == keep) {
+        continue;
+      }
+      spill(shard);
+      lru.remove();
+    }
+  }
+
+  // Writes the shard out, unless its file is still current, and drops it from the heap
+  void spill(Shard shard) {
+    if(shard.dirty) {
+      Path tmp = shard.file.resolveSibling(shard.file.getFileName() + ".tmp");
+      try {
+        shard.set.save(tmp);
+        Files.move(tmp, shard.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch(IOException e) {
+        throw new UncheckedIOException(String.format("Could not spill shard to %s", shard.file), e);
+      }
+      // an open mapping still shows the previous file
+      mapped.remove(shard.lead);
+      shard.dirty = false;
+    }
+    residentNodes -= shard.set.nodes.liveCount();
+    shard.set = null;
+    ++spills;
+  }
+
+  MappedSubstringIndex mapped(Shard shard) {
+    MappedSubstringIndex index = mapped.get(shard.lead);
+    if(index == null) {
+      try {
+        index = MappedSubstringIndex.open(shard.file);
+      } catch(IOException e) {
+        throw new UncheckedIOException(String.format("Could not open spilled shard %s", shard.file), e);
+      }
+      mapped.put(shard.lead, index);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * Common contract for the 'k-th distinct substring' engines.
+ *
+ * All engines keep the union of the distinct substrings of every inserted string and answer
+ * order queries over that union in lexicographic order. Orders are 1-based, so get(1) is the
+ * lexicographically smallest substring and get(size()) the largest. Orders and sizes are 64-bit, as the
+ * number of distinct substrings grows quadratically with the string lengths and passes 2^31 quickly.
+ *
+ * Implementations :
+ * - SubstringSet : size augmented suffix-trie, O(n * m^2) construction, fastest queries
+ * - RadixSubstringSet : path-compressed suffix-trie, O(n * m) nodes, edges skipped in one step
+ * - SuffixAutomatonSet : generalized suffix automaton, O(n * m) construction
+ * - MappedSubstringIndex : read-only, memory-mapped view of a saved SubstringSet
+ * - ConcurrentSubstringSet : SubstringSet with lock-free readers on published, immutable snapshots
+ * - SpillingSubstringSet : SubstringSet sharded by leading character, cold shards spilled to disk
+ */
+public interface SubstringIndex {
+
+  /**
+   * Adds all substrings of s.
+   * @return the number of distinct substrings that were not present before
+   */
+  long insert(String s);
+
+  /**
+   * @return the number of distinct substrings in the set
+   */
+  long size();
+
+  /**
+   * @return the k-th ( 1-based ) distinct substring in lexicographic order, or null if
+   *         k is not in [1, size()]
+   */
+  String get(long k);
+}
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy, in-order traversal of the distinct substrings with orders in [first, last] of a SubstringSet.
+ *
+ * Reasoning :
+ * Exporting a range of orders with get(k) walks down from the root and builds a new String for every
+ * single order. But consecutive orders are neighbours in a preorder walk of the trie : the next substring
+ * after x is x's first child, or else the next sibling of x or of its closest ancestor that has one.
+ *
+ * Design :
+ * - The first tryAdvance seeks to 'first' with the same partition walk as find, every later one is one
+ *   preorder step. The current path is kept as a stack of node ids and one shared char buffer, which a
+ *   step appends to or trims, so a whole range costs O(depth + number of steps), proportional to the
+ *   output, and allocates nothing per element.
+ * - The elements are a single CharSequence view over the shared buffer. It is only valid until the next
+ *   advance, toString() makes the copy to keep.
+ * - trySplit hands the lower half of the remaining orders to a new spliterator ( ORDERED splits hand out
+ *   a prefix ) which seeks on its own first advance, and seeks again to the start of the upper half itself.
+ *   The walks only read the trie, so the halves can run on different threads as long as nobody inserts.
+ *   Inserting during the traversal is detected through the set's version.
+ */
+final class SubstringRange implements Spliterator<CharSequence> {
+
+  static final long MIN_SPLIT = 1 << 10;
+
+  final SubstringSet set;
+  final long version;
+  long next;
+  long last;
+  boolean seeked;
+  // stack[d] = node at depth d + 1 on the current path, buf[d] its char
+  int[] stack;
+  char[] buf;
+  int depth;
+  final View view;
+
+  SubstringRange(SubstringSet set, long first, long last) {
+    this.set = set;
+    this.version = set.version;
+    this.next = Math.max(1, first);
+    this.last = Math.min(set.size(), last);
+    this.stack = new int[16];
+    this.buf = new char[16];
+    this.view = new View();
+  }
+
+  // -----------------
+  // Spliterator
+  // -----------------
+  public boolean tryAdvance(Consumer<? super CharSequence> action) {
+    if(next > last) {
+      return false;
+    }
+    if(set.version != version) {
+      throw new ConcurrentModificationException("SubstringSet changed during the traversal");
+    }
+    if(seeked) {
+      advance();
+    } else {
+      seek(next);
+      seeked = true;
+    }
+    ++next;
+    action.accept(view);
+    return true;
+  }
+
+  public Spliterator<CharSequence> trySplit() {
+    long remaining = estimateSize();
+    if(remaining < 2 * MIN_SPLIT) {
+      return null;
+    }
+    // an ORDERED spliterator hands out the prefix, this one moves on to the upper half and seeks again
+    long mid = next + remaining / 2;
+    SubstringRange lower = new SubstringRange(set, next, mid - 1);
+    next = mid;
+    seeked = false;
+    return lower;
+  }
+
+  public long estimateSize() {
+    return Math.max(0, last - next + 1);
+  }
+
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | NONNULL;
+  }
+
+  // -----------------
+  // Internal : WALK
+  // -----------------
+  void seek(long order) {
+    SubstringSet.NodeStore nodes = set.nodes;
+    depth = 0;
+    int n = set.root;
+    long k = order;
+    while(true) {
+      int c = nodes.firstChild(n);
+      while(k > nodes.count(c)) {
+        k -= nodes.count(c);
+        c = nodes.nextSibling(c);
+      }
+      push(c);
+      if(k == 1) {
+        return;
+      }
+      --k;
+      n = c;
+    }
+  }
+
+  // Preorder successor of the top of the stack. There always is one, as next <= last <= size
+  void advance() {
+    SubstringSet.NodeStore nodes = set.nodes;
+    int c = nodes.firstChild(stack[depth - 1]);
+    if(c != SubstringSet.NIL) {
+      push(c);
+      return;
+    }
+    while(true) {
+      int s = nodes.nextSibling(stack[depth - 1]);
+      if(s != SubstringSet.NIL) {
+        stack[depth - 1] = s;
+        buf[depth - 1] = set.symbol(s);
+        return;
+      }
+      --depth;
+    }
+  }
+
+  void push(int n) {
+    if(depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+      buf = Arrays.copyOf(buf, depth * 2);
+    }
+    stack[depth] = n;
+    buf[depth++] = set.symbol(n);
+  }
+
+  // The current substring, over the shared buffer
+  final class View implements CharSequence {
+    public int length() {
+      return depth;
+    }
+
+    public char charAt(int index) {
+      if(index < 0 || index >= depth) {
+        throw new IndexOutOfBoundsException(String.format("%d not in [0, %d)", index, depth));
+      }
+      return buf[index];
+    }
+
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(buf, 0, depth);
+    }
+  }
+}
@@ -0,0 +1,320 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Long-running query server over a built ( or loaded ) SubstringIndex.
+ *
+ * Reasoning :
+ * Solution is a one-shot program : every batch of queries pays for reading the input and building the
+ * index again, and for a JVM start. A server builds or maps the index once and answers any number of
+ * batches from any number of clients.
+ *
+ * Protocol ( one request per line, one response line per answer, UTF-8 ) :
+ *   GET k            => OK <k-th substring>   or NONE if k is not in [1, size]
+ *   SIZE             => OK <size>
+ *   BATCH k1 k2 ..   => one GET response line per order, in request order
+ *   STATS            => OK <server side latency summary of all requests so far>
+ *   QUIT             => closes the connection
+ * Anything else, or a request the index fails on ( eg. a spilled shard that can not be read ), is answered
+ * with ERR <reason> and the connection stays open. Results containing '\n' can not be told apart from the
+ * next response, so the index should only hold line-free strings ( LineIngest never inserts any ).
+ *
+ * Design :
+ * - One thread runs an NIO selector over the listening socket and all client connections, so many
+ *   clients are served without a thread per client ( the JDK 8 equivalent of virtual threads, Unix-domain
+ *   socket channels need JDK 16 so it listens on TCP ). It also answers the queries : SubstringSet is not
+ *   thread-safe, and a get(k) takes microseconds, less than handing it over to another thread would.
+ * - Every connection has a read buffer for the partial line and a queue of pending response buffers. A
+ *   connection with more than MAX_PENDING bytes of unsent responses is not read from until the client
+ *   has caught up, so a client that does not read can not make the server buffer without bound.
+ * - The time from parsing a request to having its response is recorded per request in a LatencyHistogram.
+ *
+ * Usage :
+ *   java SubstringServer --port 7070 ( --index saved.ssix | --lines corpus.txt )
+ *   printf 'SIZE\nGET 3\nBATCH 1 2 3\n' | nc localhost 7070
+ */
+public class SubstringServer implements Closeable {
+
+  static final int MAX_LINE = 1 << 20;
+  static final int MAX_PENDING = 1 << 20;
+
+  final SubstringIndex index;
+  final ServerSocketChannel server;
+  final Selector selector;
+  final LatencyHistogram latency;
+  Thread thread;
+  volatile boolean running;
+
+  public SubstringServer(SubstringIndex index, InetSocketAddress address) throws IOException {
+    this.index = index;
+    this.latency = new LatencyHistogram();
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    server.bind(address);
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public int port() {
+    return server.socket().getLocalPort();
+  }
+
+  /**
+   * Serves on a new ( non-daemon ) thread until close().
+   */
+  public synchronized void start() {
+    running = true;
+    thread = new Thread(this::serve, "substring-server-" + port());
+    thread.start();
+  }
+
+  public void close() throws IOException {
+    running = false;
+    selector.wakeup();
+    Thread t;
+    synchronized(this) {
+      t = thread;
+    }
+    if(t != null && t != Thread.currentThread()) {
+      try {
+        t.join();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for(SelectionKey key : selector.keys()) {
+      key.channel().close();
+    }
+    selector.close();
+  }
+
+  /**
+   * @return a copy of the per-request latency histogram
+   */
+  public LatencyHistogram latency() {
+    synchronized(latency) {
+      return latency.copy();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = 7070;
+    SubstringIndex index = null;
+    for(int i = 0; i + 1 < args.length; i += 2) {
+      switch(args[i]) {
+        case "--port":
+          port = Integer.parseInt(args[i + 1]);
+          break;
+        case "--index":
+          index = MappedSubstringIndex.open(Paths.get(args[i + 1]));
+          break;
+        case "--lines":
+          SubstringSet set = new SubstringSet();
+          set.insertLines(Paths.get(args[i + 1]), StandardCharsets.UTF_8, null);
+          index = set;
+          break;
+        default:
+          throw new IllegalArgumentException(String.format("Unknown option : %s", args[i]));
+      }
+    }
+    if(index == null) {
+      System.err.println("Usage : SubstringServer [--port 7070] ( --index saved.ssix | --lines corpus.txt )");
+      System.exit(2);
+    }
+    SubstringServer server = new SubstringServer(index, new InetSocketAddress(port));
+    System.err.println(String.format("Serving %d substrings on port %d", index.size(), server.port()));
+    server.start();
+  }
+
+  // -----------------
+  // Internal : PROTOCOL
+  // -----------------
+  // The response lines ( each '\n' terminated ) to one request line, null for QUIT
+  String handle(String line) {
+    long start = System.nanoTime();
+    StringBuilder out = new StringBuilder();
+    String[] words = line.trim().split("\\s+");
+    String command = words[0].toUpperCase(Locale.ROOT);
+    try {
+      switch(command) {
+        case "GET":
+          if(words.length != 2) {
+            return "ERR usage : GET k\n";
+          }
+          answer(out, Long.parseLong(words[1]));
+          break;
+        case "SIZE":
+          out.append("OK ").append(index.size()).append('\n');
+          break;
+        case "BATCH":
+          for(int i = 1; i < words.length; ++i) {
+            answer(out, Long.parseLong(words[i]));
+          }
+          break;
+        case "STATS":
+          out.append("OK ").append(latency()).append('\n');
+          break;
+        case "QUIT":
+          return null;
+        default:
+          return String.format("ERR unknown command : %s\n", command);
+      }
+    } catch(NumberFormatException e) {
+      return String.format("ERR not an order : %s\n", e.getMessage());
+    } catch(RuntimeException e) {
+      // the index failed on this request only, the other requests and clients go on
+      String reason = (e.getMessage() == null) ? e.getClass().getName() : e.getMessage();
+      return String.format("ERR %s\n", reason.replace('\n', ' '));
+    }
+    synchronized(latency) {
+      latency.record(System.nanoTime() - start);
+    }
+    return out.toString();
+  }
+
+  void answer(StringBuilder out, long k) {
+    String found = index.get(k);
+    if(found == null) {
+      out.append("NONE\n");
+    } else {
+      out.append("OK ").append(found).append('\n');
+    }
+  }
+
+  // -----------------
+  // Internal : I/O
+  // -----------------
+  void serve() {
+    try {
+      while(running) {
+        selector.select();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while(keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if(key.isAcceptable()) {
+              accept();
+            } else {
+              Connection c = (Connection) key.attachment();
+              if(key.isReadable()) {
+                c.read();
+              }
+              if(key.isValid() && key.isWritable()) {
+                c.write();
+              }
+            }
+          } catch(IOException e) {
+            key.channel().close();
+          }
+        }
+      }
+    } catch(IOException e) {
+      throw new IllegalStateException("Selector failed", e);
+    }
+  }
+
+  void accept() throws IOException {
+    SocketChannel ch = server.accept();
+    if(ch == null) {
+      return;
+    }
+    ch.configureBlocking(false);
+    SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+    key.attach(new Connection(ch, key));
+  }
+
+  class Connection {
+    final SocketChannel ch;
+    final SelectionKey key;
+    ByteBuffer in;
+    final ArrayDeque<ByteBuffer> pending;
+    int pendingBytes;
+    boolean closing;
+
+    Connection(SocketChannel ch, SelectionKey key) {
+      this.ch = ch;
+      this.key = key;
+      this.in = ByteBuffer.allocate(4096);
+      this.pending = new ArrayDeque<>();
+    }
+
+    void read() throws IOException {
+      if(ch.read(in) < 0) {
+        ch.close();
+        return;
+      }
+      in.flip();
+      int st = in.position();
+      for(int i = st; i < in.limit() && !closing; ++i) {
+        if(in.get(i) != '\n') {
+          continue;
+        }
+        String line = new String(in.array(), st, i - st, StandardCharsets.UTF_8);
+        st = i + 1;
+        if(line.trim().isEmpty()) {
+          continue;
+        }
+        String response = handle(line);
+        if(response == null) {
+          closing = true;
+        } else {
+          queue(response.getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      in.position(st);
+      in.compact();
+      if(!in.hasRemaining()) {
+        if(in.capacity() >= MAX_LINE) {
+          queue("ERR line too long\n".getBytes(StandardCharsets.UTF_8));
+          closing = true;
+        } else {
+          ByteBuffer larger = ByteBuffer.allocate(in.capacity() * 2);
+          in.flip();
+          larger.put(in);
+          in = larger;
+        }
+      }
+      write();
+    }
+
+    void queue(byte[] response) {
+      pending.add(ByteBuffer.wrap(response));
+      pendingBytes += response.length;
+    }
+
+    void write() throws IOException {
+      while(!pending.isEmpty()) {
+        ByteBuffer head = pending.peek();
+        pendingBytes -= ch.write(head);
+        if(head.hasRemaining()) {
+          break;
+        }
+        pending.poll();
+      }
+      if(pending.isEmpty() && closing) {
+        ch.close();
+        return;
+      }
+      int ops = pending.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+      if(pendingBytes < MAX_PENDING && !closing) {
+        ops |= SelectionKey.OP_READ;
+      }
+      key.interestOps(ops);
+    }
+  }
+}
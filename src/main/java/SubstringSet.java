@@ -1,14 +1,25 @@
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.function.Consumer;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.AllArgsConstructor;
-import lombok.Value;
 
 /**
  * Description :
@@ -36,9 +47,9 @@ import lombok.Value;
  *   adding all the suffixes of n strings and also takes a worst-case of O(n * m^2) space. But
  *   it makes the query time O(m * k).
  *   - I have used this approach of using the suffix-trie in my implementation
- *   - A 'suffix-tree' can be built using Ukkonen's algorithm in O(n * m) time. This is
- *     an intented improvment to speed up construction time, but not implemented
- *     here due to time constraints.
+ *   - A 'suffix-tree' can be built using Ukkonen's algorithm in O(n * m) time. A suffix automaton
+ *     has the same construction bound and is implemented as a separate engine in
+ *     SuffixAutomatonSet ( see SubstringIndex ).
  *
  * Design :
  * a. Generating an union of all substrings of a set of strings
@@ -78,6 +89,55 @@ import lombok.Value;
  * => k=1, a, reached base-case ( k == 1 )
  * => 'a'
  *
+ * c. Node storage
+ * The trie has O(n * m^2) nodes, so the per-node footprint decides how large an input fits in the heap.
+ * A node object with a boxed Character, its own TreeMap and the TreeMap.Entry objects costs well over 100
+ * bytes. Instead the nodes live in a 'struct-of-arrays' NodeStore and are addressed by int ids :
+ *   labels[id] (char), counts[id] (int), firstChild[id] (int), nextSibling[id] (int) => 14 bytes per node
+ * Children are kept as a singly linked sibling list sorted by label, so the in-order walk in getPartition
+ * is the same lexicographic scan as iterating the TreeMap was. Insert and partition lookups only read and
+ * write array slots and never allocate ( apart from amortized array growth ).
+ * Orders are 64-bit ( the number of substrings is quadratic in the input ), but counts stay 4 bytes for
+ * every node whose subtree has less than 2^31 substrings, the rare larger ones spill into a long[] table.
+ *
+ * d. Instrumentation
+ * stats() returns a snapshot of the node count, nodes per inserted char, depth distribution, estimated
+ * footprint, total insert time and the get(k) latency histogram. Insert recording is always on : two
+ * nanoTime() calls per insert and two array increments per inserted suffix chain. Query recording is opt-in
+ * ( Builder.recordQueries ), so by default get(k) and getView(k) only read the set and any number of threads
+ * can query it. When on, the latency histogram is shared by the readers and updated under its own lock.
+ * Inserts and recorded ( slow ) queries are also emitted as JFR events when the JDK has JFR, see
+ * SubstringSetEvents.
+ *
+ * e. Removal
+ * A set created as removable keeps refs[id], the number of inserted suffixes passing through each node, and
+ * the multiset of inserted strings. remove(s) walks the suffixes of s once more, dropping one reference per
+ * node. A node left without references takes its ( single chain ) subtree with it, the chain length is
+ * subtracted up the path and the freed slots are re-used by later inserts. So a sliding window of strings
+ * is maintained in time proportional to the suffixes of the strings entering and leaving it.
+ *
+ * f. Bounded depth
+ * A set built with maxLength L only inserts ( and removes ) the first L characters of every suffix, so it
+ * holds exactly the distinct substrings of length <= L, in the same lexicographic order. Construction is
+ * O(n * m * L) time and space instead of O(n * m^2). Eg. L = 2 over { "aab", "aac" } => a, aa, ab, ac, b, c
+ *
+ * g. Alphabet
+ * A set built with an Alphabet stores the dense code of every char instead of the char, bit-packed at
+ * Alphabet.bits() per node ( 5 bits for a-z, 2 for ACGT ) instead of 16, and the saved index keeps the
+ * packing. The codes are order preserving, so siblings sort the same and only find() maps the labels back.
+ * Inserting a char outside the alphabet is an IllegalArgumentException. Children stay sibling lists : an
+ * array indexed by code would cost size() * 4 bytes per node, more than the whole node. Labels are 2 of the
+ * 14 bytes of a node, so packing saves ~10% of the trie, and find() pays an unpack per output char.
+ *
+ * h. Witnesses
+ * find() appends the answer char by char, so a query allocates a StringBuilder, its buffer and the String,
+ * all proportional to the answer. A set built with witnesses keeps every inserted string ( also the ones
+ * removed later ) and, per node, the ( string id, end offset ) of the occurrence that created it, 8 more
+ * bytes per node. getView(k) walks down like find() counting the depth, and wraps the depth chars ending
+ * at the witness in a CharBuffer : one small object whatever the answer length, no chars copied. Any
+ * occurrence will do, as every occurrence of a substring spells the same chars. Latin-1 line ingest
+ * decodes every line into a String for it. Eg. { "aab", "aac" } : the node 'ac' is witnessed by ( 1, 3 ).
+ *
  * HackerRank Evaluation and Comment :
  * - Functional-Correctness : [ 6 / 6 ]
  * - Time-Complexity : [ 3-4 / 6 ]  : This is where the construction time of O(m^2 * n) is hurting
@@ -94,42 +154,476 @@ import lombok.Value;
  * time can be reduced by using 'suffix-tree' with Ukkonen's construction algo bringing the asymptotics down from
  * O(n * m^2) -> O(n * m)
  */
-public class SubstringSet {
+public class SubstringSet implements SubstringIndex {
 
-  final SuffixTrieNode root;
+  static final int NIL = -1;
+
+  final NodeStore nodes;
+  final ChildIndex childIndex;
+  final int root;
+  // re-usable ancestor buffer for insertSuffixAt
+  int[] path;
+  // bumped whenever the set of substrings ( and so the orders ) changes, see CachedSubstringSet
+  long version;
+  final Metrics metrics;
+  // multiset of the inserted strings, null unless the set is removable
+  final Map<String, Integer> inserted;
+  // longest substring kept, see Builder.maxLength
+  final int maxLength;
+  // labels are codes of this alphabet, null if they are the chars themselves
+  final Alphabet alphabet;
+  // re-usable code buffer for the Latin-1 insert with an alphabet
+  char[] codes;
+  // the inserted strings the node witnesses point into, null unless the set keeps witnesses
+  final List<String> sources;
+  // id of the source being inserted, NIL if none is recorded
+  int source;
 
   public SubstringSet() {
-    this.root = new SuffixTrieNode('.', new TreeMap<>(), 0);
+    this(false);
+  }
+
+  /**
+   * @param removable keep the per-node references ( 4 more bytes per node ) and the inserted strings that
+   *                  remove(String) needs
+   */
+  public SubstringSet(boolean removable) {
+    this(removable, Integer.MAX_VALUE);
+  }
+
+  SubstringSet(boolean removable, int maxLength) {
+    this(removable, maxLength, null);
+  }
+
+  SubstringSet(boolean removable, int maxLength, Alphabet alphabet) {
+    this(removable, maxLength, alphabet, false);
+  }
+
+  SubstringSet(boolean removable, int maxLength, Alphabet alphabet, boolean witnesses) {
+    this.maxLength = maxLength;
+    this.alphabet = alphabet;
+    this.nodes = new NodeStore();
+    if(alphabet != null) {
+      nodes.packLabels(alphabet.bits());
+    }
+    if(removable) {
+      nodes.trackReferences();
+    }
+    if(witnesses) {
+      nodes.trackWitnesses();
+    }
+    this.childIndex = new ChildIndex();
+    this.metrics = new Metrics();
+    this.inserted = removable ? new HashMap<>() : null;
+    this.root = nodes.create((alphabet == null) ? '.' : 0, 0);
+    this.path = new int[16];
+    this.codes = new char[0];
+    this.sources = witnesses ? new ArrayList<>() : null;
+    this.source = NIL;
   }
 
   // -----------------
   // public API
   // -----------------
-  public int insert(String s) {
-    return insertSuffixesOf(s);
+  public long insert(String s) {
+    Object event = SubstringSetEvents.beginInsert();
+    long start = System.nanoTime();
+    long added = insertSuffixesOf(s);
+    indexWideNodes();
+    metrics.recordInsert(s.length(), System.nanoTime() - start);
+    SubstringSetEvents.commitInsert(event, s.length(), added, nodes.liveCount());
+    return added;
+  }
+
+  /**
+   * Removes one occurrence of s ( inserted strings are a multiset ), dropping every substring that no
+   * other inserted string still contains. Only on a set created as removable.
+   * @return the number of distinct substrings removed, 0 if s was not inserted
+   */
+  public long remove(String s) {
+    if(inserted == null) {
+      throw new UnsupportedOperationException("SubstringSet was not created as removable");
+    }
+    Integer occurrences = inserted.get(s);
+    if(occurrences == null) {
+      return 0;
+    }
+    if(occurrences == 1) {
+      inserted.remove(s);
+    } else {
+      inserted.put(s, occurrences - 1);
+    }
+    long removed = removeSuffixesOf(s);
+    indexWideNodes();
+    return removed;
+  }
+
+  public long size() {
+    return nodes.count(root);
+  }
+
+  public String get(long k) {
+    if(metrics.queryLatency == null) {
+      return find(k);
+    }
+    Object event = SubstringSetEvents.beginQuery();
+    long start = System.nanoTime();
+    String found = find(k);
+    recordQuery(event, start, k, found);
+    return found;
+  }
+
+  /**
+   * Same substring as get(k), as a read-only CharBuffer view of the inserted string it was first seen in,
+   * so no chars are copied, see 'Witnesses'. Only on a set built with witnesses, otherwise it is get(k).
+   * @return null if k is not in [1, size]
+   */
+  public CharSequence getView(long k) {
+    if(sources == null) {
+      return get(k);
+    }
+    if(metrics.queryLatency == null) {
+      return findView(k);
+    }
+    Object event = SubstringSetEvents.beginQuery();
+    long start = System.nanoTime();
+    CharSequence found = findView(k);
+    recordQuery(event, start, k, found);
+    return found;
+  }
+
+  /**
+   * Inverse of get : rank(get(k)) == k.
+   * @return the order of s if it is in the set, otherwise -(the order s would have), ie. -(the number of
+   *         substrings smaller than s) - 1, like Arrays.binarySearch
+   */
+  public long rank(String s) {
+    return rankOf(s);
+  }
+
+  /**
+   * @return the number of distinct substrings that start with prefix ( including prefix itself )
+   */
+  public long countWithPrefix(String prefix) {
+    int n = nodeOf(prefix);
+    return (n == NIL) ? 0 : nodes.count(n);
+  }
+
+  /**
+   * @return the k-th ( 1-based ) distinct substring among those starting with prefix, in lexicographic
+   *         order, or null if k is not in [1, countWithPrefix(prefix)]
+   */
+  public String getWithPrefix(String prefix, long k) {
+    if(prefix.isEmpty()) {
+      return get(k);
+    }
+    int n = nodeOf(prefix);
+    if(n == NIL || k < 1 || k > nodes.count(n)) {
+      return null;
+    }
+    // the substrings with the prefix are the contiguous run of orders starting at rank(prefix)
+    return find(rankOf(prefix) + k - 1);
+  }
+
+  /**
+   * Answers all the given orders in a single ordered walk of the trie, sharing the common prefix walks
+   * between them.
+   * @return result[i] = get(orders[i])
+   */
+  public String[] getAll(long[] orders) {
+    return findAll(orders);
+  }
+
+  /**
+   * Lazily enumerates the substrings with orders in [from, to] ( clamped to [1, size] ) in lexicographic
+   * order : one seek to 'from', then one preorder step per element, see SubstringRange. The elements are a
+   * single reused view, valid until the next element is taken, toString() copies it. It splits for
+   * parallel streams, which are safe as long as the set is not modified meanwhile ( that fails fast ).
+   */
+  public Spliterator<CharSequence> spliterator(long from, long to) {
+    return new SubstringRange(this, from, to);
+  }
+
+  /**
+   * Same as spliterator(from, to), with the view valid until the next hasNext() or next().
+   */
+  public Iterator<CharSequence> iterator(long from, long to) {
+    return Spliterators.iterator(spliterator(from, to));
+  }
+
+  public Stream<CharSequence> stream(long from, long to) {
+    return StreamSupport.stream(spliterator(from, to), false);
+  }
+
+  /**
+   * Persists the trie in the MappedSubstringIndex file format, to be re-opened read-only with
+   * MappedSubstringIndex.open(path) without re-building.
+   * @throws IOException also if the file would exceed MappedSubstringIndex.MAX_BYTES ( ~200M nodes )
+   */
+  public void save(Path path) throws IOException {
+    MappedSubstringIndex.write(this, path);
+  }
+
+  /**
+   * Inserts every line of the file ( empty lines skipped ) straight from a read-only mapping of it. ASCII
+   * and Latin-1 lines go from the mapped bytes into the trie without a String or char[] per line, see
+   * LineIngest. The progress callback ( may be null ) is called every few MB and once at the end.
+   * @return the number of distinct substrings that were not present before
+   * @throws IllegalArgumentException if the charset does not encode '\n' as the single byte 0x0A, eg. UTF-16
+   */
+  public long insertLines(Path file, Charset charset, LineIngest.Progress progress) throws IOException {
+    return LineIngest.insertLines(this, file, charset, progress);
+  }
+
+  /**
+   * @return a snapshot of the construction and query statistics, see SubstringSetStats
+   */
+  public SubstringSetStats stats() {
+    return new SubstringSetStats(this);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builds the set of all the given strings on the pool, returning the same trie ( same size() and
+   * get(k) ) as inserting them one by one.
+   */
+  public static SubstringSet buildParallel(List<String> strings, ForkJoinPool pool) {
+    return buildShards(strings, pool);
+  }
+
+  public static SubstringSet buildParallel(List<String> strings) {
+    return buildParallel(strings, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Configuration of a SubstringSet :
+   *   SubstringSet.builder().maxLength(3).build()
+   */
+  public static class Builder {
+    int maxLength = Integer.MAX_VALUE;
+    boolean removable;
+    Alphabet alphabet;
+    boolean witnesses;
+    boolean recordQueries;
+
+    Builder() {
+    }
+
+    /**
+     * Keeps only the substrings of at most maxLength characters, see 'Bounded depth'.
+     */
+    public Builder maxLength(int maxLength) {
+      if(maxLength < 1) {
+        throw new IllegalArgumentException(String.format("maxLength must be positive : %d", maxLength));
+      }
+      this.maxLength = maxLength;
+      return this;
+    }
+
+    /**
+     * Allows remove(String), see 'Removal'.
+     */
+    public Builder removable(boolean removable) {
+      this.removable = removable;
+      return this;
+    }
+
+    /**
+     * Stores the labels as packed codes of the alphabet, see 'Alphabet'. Eg. Alphabet.LOWERCASE or
+     * Alphabet.detect(strings).
+     */
+    public Builder alphabet(Alphabet alphabet) {
+      this.alphabet = alphabet;
+      return this;
+    }
+
+    /**
+     * Keeps the inserted strings and a witness per node, for getView(k), see 'Witnesses'.
+     */
+    public Builder witnesses(boolean witnesses) {
+      this.witnesses = witnesses;
+      return this;
+    }
+
+    /**
+     * Records the latency of every get(k) / getView(k) in stats(), see 'Instrumentation'.
+     */
+    public Builder recordQueries(boolean recordQueries) {
+      this.recordQueries = recordQueries;
+      return this;
+    }
+
+    public SubstringSet build() {
+      SubstringSet set = new SubstringSet(removable, maxLength, alphabet, witnesses);
+      if(recordQueries) {
+        set.metrics.queryLatency = new LatencyHistogram();
+      }
+      return set;
+    }
+
+    /**
+     * Same as SubstringSet.buildParallel, with this configuration. Not for removable sets or sets with
+     * witnesses, as the shards are merged without their references and witnesses.
+     */
+    public SubstringSet buildParallel(List<String> strings, ForkJoinPool pool) {
+      if(removable) {
+        throw new IllegalStateException("buildParallel does not support removable sets");
+      }
+      if(witnesses) {
+        throw new IllegalStateException("buildParallel does not support witnesses");
+      }
+      return buildShards(strings, pool, maxLength, alphabet);
+    }
+  }
+
+  // -----------------
+  // Internal : PARALLEL BUILD
+  // -----------------
+  // Suffixes starting with different characters end up in disjoint subtrees of the root, so they are
+  // partitioned by their leading character and every partition is built into its own shard trie
+  // concurrently. Each shard's root has exactly one child ( its leading character ), so the merge
+  // appends the shard's nodes with an id offset and links that child under the root, in label order.
+  // Peak memory is ~2x the final trie, since the shards are copied into one store.
+  static SubstringSet buildShards(List<String> strings, ForkJoinPool pool) {
+    return buildShards(strings, pool, Integer.MAX_VALUE, null);
+  }
+
+  static SubstringSet buildShards(List<String> strings, ForkJoinPool pool, int maxLength, Alphabet alphabet) {
+    long start = System.nanoTime();
+    long chars = 0;
+    final char[][] bufs = new char[strings.size()][];
+    for(int i = 0; i < bufs.length; ++i) {
+      bufs[i] = (alphabet == null) ? strings.get(i).toCharArray() : alphabet.encode(strings.get(i));
+      chars += bufs[i].length;
+    }
+
+    List<ForkJoinTask<SubstringSet>> shards = new ArrayList<>();
+    for(char lead : distinctChars(bufs)) {
+      shards.add(pool.submit(() -> buildShard(bufs, lead, maxLength, alphabet)));
+    }
+
+    SubstringSet set = new SubstringSet(false, maxLength, alphabet);
+    int last = NIL;
+    for(ForkJoinTask<SubstringSet> task : shards) {
+      SubstringSet shard = task.join();
+      int child = set.nodes.appendAll(shard.nodes);
+      if(last == NIL) {
+        set.nodes.firstChild[set.root] = child;
+      } else {
+        set.nodes.nextSibling[last] = child;
+      }
+      set.nodes.accumulateCountBy(set.root, shard.size());
+      set.metrics.mergeDepths(shard.metrics);
+      last = child;
+    }
+    set.childIndex.indexAll(set.nodes);
+    set.metrics.recordInsert(chars, System.nanoTime() - start);
+    return set;
   }
 
-  public int size() {
-    return root.getCount();
+  // The distinct chars of bufs, ie. the leading chars of their suffixes, in order. Sorting a copy is
+  // proportional to the input, unlike a table of all 65536 chars that every call would have to scan.
+  static char[] distinctChars(char[][] bufs) {
+    int total = 0;
+    for(char[] buf : bufs) {
+      total += buf.length;
+    }
+    char[] all = new char[total];
+    int at = 0;
+    for(char[] buf : bufs) {
+      System.arraycopy(buf, 0, all, at, buf.length);
+      at += buf.length;
+    }
+    Arrays.sort(all);
+    int distinct = 0;
+    for(int i = 0; i < total; ++i) {
+      if(i == 0 || all[i] != all[i - 1]) {
+        all[distinct++] = all[i];
+      }
+    }
+    return Arrays.copyOf(all, distinct);
   }
 
-  public String get(int k) {
-    return find(k);
+  static SubstringSet buildShard(char[][] bufs, char lead, int maxLength, Alphabet alphabet) {
+    SubstringSet shard = new SubstringSet(false, maxLength, alphabet);
+    for(char[] buf : bufs) {
+      for(int i = 0; i < buf.length; ++i) {
+        if(buf[i] == lead) {
+          shard.insertSuffix(buf, i, shard.lastOfSuffix(i, buf.length));
+        }
+      }
+    }
+    return shard;
   }
 
   // -----------------
   // Internal : PUT
   // -----------------
-  int insertSuffixesOf(String s) {
-    int count = 0;
-    char[] buf = s.toCharArray();
+  long insertSuffixesOf(String s) {
+    char[] buf = (alphabet == null) ? s.toCharArray() : alphabet.encode(s);
+    if(inserted != null) {
+      inserted.merge(s, 1, Integer::sum);
+    }
+    if(sources != null) {
+      source = sources.size();
+      sources.add(s);
+    }
+    long count = 0;
     for(int i = 0; i < s.length(); ++i) {
       // System.out.println(String.format("Inserting : %s", s.substring(i, s.length())));
-      count += insertSuffix(buf, i, s.length() - 1);
+      count += insertSuffix(buf, i, lastOfSuffix(i, s.length()));
     }
+    source = NIL;
     return count;
   }
 
+  // Latin-1 bytes [st, en) of buf
+  long insertSuffixesOf(ByteBuffer buf, int st, int en) {
+    if(sources != null) {
+      // the witnesses need the line as a source string anyway
+      return insertSuffixesOf(LineIngest.decode(buf, st, en, StandardCharsets.ISO_8859_1));
+    }
+    if(alphabet != null) {
+      return insertCodesOf(buf, st, en);
+    }
+    if(inserted != null) {
+      inserted.merge(LineIngest.decode(buf, st, en, StandardCharsets.ISO_8859_1), 1, Integer::sum);
+    }
+    long count = 0;
+    for(int i = st; i < en; ++i) {
+      count += insertSuffixAt(root, buf, i, lastOfSuffix(i, en));
+    }
+    return count;
+  }
+
+  // Encodes the Latin-1 bytes into the re-usable code buffer and inserts from there
+  long insertCodesOf(ByteBuffer buf, int st, int en) {
+    int length = en - st;
+    if(codes.length < length) {
+      codes = new char[length + (length >> 1)];
+    }
+    for(int i = 0; i < length; ++i) {
+      codes[i] = alphabet.encode((char) (buf.get(st + i) & 0xff));
+    }
+    if(inserted != null) {
+      inserted.merge(LineIngest.decode(buf, st, en, StandardCharsets.ISO_8859_1), 1, Integer::sum);
+    }
+    long count = 0;
+    for(int i = 0; i < length; ++i) {
+      count += insertSuffix(codes, i, lastOfSuffix(i, length));
+    }
+    return count;
+  }
+
+  // Index of the last character of the suffix starting at i of a string ending before end, capped at
+  // maxLength characters
+  int lastOfSuffix(int i, int end) {
+    return (end - i > maxLength) ? i + maxLength - 1 : end - 1;
+  }
+
   int insertSuffix(String suffix) {
     return insertSuffixAt(root, suffix.toCharArray(), 0, suffix.length() - 1);
   }
@@ -139,123 +633,995 @@ public class SubstringSet {
     return insertSuffixAt(root, suffix, st, en);
   }
 
-  // Impl uses stack recursion impl to 'conditionally' bubble up count
-  int insertSuffixAt(SuffixTrieNode n, char[] buf, int idx, int en) {
-    if(idx > en) {
+  // Walks down the existing prefix of the suffix, recording the visited nodes in the re-usable path
+  // buffer. The first missing node starts a brand-new chain for the rest of the suffix, so exactly
+  // (en - i + 1) nodes are added and that delta is applied to the recorded ancestors in one pass.
+  // In a removable set the suffix also references every node on its path ( the new ones start at 1 ).
+  // While a source is being inserted every new node records it as its witness, ending after buf[j].
+  // No recursion, so the suffix length is not limited by the thread stack.
+  int insertSuffixAt(int n, char[] buf, int idx, int en) {
+    int length = en - idx + 1;
+    if(path.length < length) {
+      path = new int[length + (length >> 1)];
+    }
+
+    int depth = 0;
+    int i = idx;
+    for(; i <= en; ++i) {
+      path[depth++] = n;
+      int creations = nodes.creations;
+      n = nodes.childOrCreate(n, buf[i]);
+      if(nodes.creations != creations) {
+        break;
+      }
+    }
+    if(i > en) {
+      if(nodes.refs != null) {
+        reference(depth);
+        ++nodes.refs[n];
+      }
       return 0;
     }
 
-    SuffixTrieNode next = null;
-    boolean insertedNew = false;
-    char c = buf[idx];
-    if(n.getChildren().containsKey(c)) {
-      next = n.getChildren().get(c);
-    } else {
-      next = SuffixTrieNode.createFor(c);
-      n.getChildren().put(c, next);
-      insertedNew = true;
+    // n is new ( count 1 ) : append the rest of the suffix below it, each node counting its chain
+    int added = en - i + 1;
+    childIndex.grew(path[depth - 1]);
+    nodes.accumulateCountBy(n, added - 1);
+    if(source != NIL) {
+      nodes.witness(n, source, i + 1);
+    }
+    for(int j = i + 1; j <= en; ++j) {
+      n = nodes.childOrCreate(n, buf[j]);
+      nodes.accumulateCountBy(n, en - j);
+      if(source != NIL) {
+        nodes.witness(n, source, j + 1);
+      }
+    }
+    for(int d = 0; d < depth; ++d) {
+      nodes.accumulateCountBy(path[d], added);
+      childIndex.invalidate(path[d]);
+    }
+    if(nodes.refs != null) {
+      reference(depth);
+    }
+    // the new chain covers the depths [depth, length]
+    metrics.recordChain(depth, length);
+    ++version;
+    if(childIndex.pendingSize >= ChildIndex.MAX_PENDING) {
+      indexWideNodes();
+    }
+    return added;
+  }
+
+  // Same as insertSuffixAt(int, char[], int, int), reading the characters as Latin-1 bytes of buf.
+  // Kept as a copy rather than behind a CharSequence so that neither loop pays for an interface call.
+  int insertSuffixAt(int n, ByteBuffer buf, int idx, int en) {
+    int length = en - idx + 1;
+    if(path.length < length) {
+      path = new int[length + (length >> 1)];
+    }
+
+    int depth = 0;
+    int i = idx;
+    for(; i <= en; ++i) {
+      path[depth++] = n;
+      int creations = nodes.creations;
+      n = nodes.childOrCreate(n, (char) (buf.get(i) & 0xff));
+      if(nodes.creations != creations) {
+        break;
+      }
+    }
+    if(i > en) {
+      if(nodes.refs != null) {
+        reference(depth);
+        ++nodes.refs[n];
+      }
+      return 0;
     }
 
-    int added = insertSuffixAt(next, buf, idx + 1, en);
-    if(insertedNew) {
-      ++added;
+    int added = en - i + 1;
+    childIndex.grew(path[depth - 1]);
+    nodes.accumulateCountBy(n, added - 1);
+    for(int j = i + 1; j <= en; ++j) {
+      n = nodes.childOrCreate(n, (char) (buf.get(j) & 0xff));
+      nodes.accumulateCountBy(n, en - j);
+    }
+    for(int d = 0; d < depth; ++d) {
+      nodes.accumulateCountBy(path[d], added);
+      childIndex.invalidate(path[d]);
     }
-    if(added > 0) {
-      n.accumulateCountBy(added);
+    if(nodes.refs != null) {
+      reference(depth);
+    }
+    metrics.recordChain(depth, length);
+    ++version;
+    if(childIndex.pendingSize >= ChildIndex.MAX_PENDING) {
+      indexWideNodes();
     }
     return added;
   }
 
+  // Brings the ChildIndex up to date with the writes so far, see ChildIndex. Every write entry point
+  // calls it before returning, so that queries never have to write.
+  void indexWideNodes() {
+    childIndex.refresh(nodes);
+  }
+
+  // One more suffix passes through path[1 .. depth - 1] ( path[0] is the root )
+  void reference(int depth) {
+    for(int d = 1; d < depth; ++d) {
+      ++nodes.refs[path[d]];
+    }
+  }
+
+  // -----------------
+  // Internal : REMOVE
+  // -----------------
+  long removeSuffixesOf(String s) {
+    long count = 0;
+    char[] buf = (alphabet == null) ? s.toCharArray() : alphabet.encode(s);
+    for(int i = 0; i < buf.length; ++i) {
+      count += removeSuffixAt(buf, i, lastOfSuffix(i, buf.length));
+    }
+    return count;
+  }
+
+  // Walks down the suffix dropping one reference from every node on its path. The first node c that
+  // drops to 0 references was only on the path of this suffix, so its whole subtree is the chain of the
+  // rest of the suffix : exactly (en - i + 1) substrings that no other suffix contains. The chain is
+  // unlinked and its nodes go to the free list, and the ancestors lose (en - i + 1) from their counts.
+  // Time proportional to the suffix length, like insertSuffixAt.
+  int removeSuffixAt(char[] buf, int idx, int en) {
+    int length = en - idx + 1;
+    if(path.length < length) {
+      path = new int[length + (length >> 1)];
+    }
+
+    int depth = 0;
+    int n = root;
+    for(int i = idx; i <= en; ++i) {
+      path[depth++] = n;
+      int c = nodes.child(n, buf[i]);
+      if(--nodes.refs[c] > 0) {
+        n = c;
+        continue;
+      }
+
+      int removed = en - i + 1;
+      nodes.unlink(n, c);
+      while(c != NIL) {
+        int next = nodes.firstChild(c);
+        nodes.free(c);
+        c = next;
+      }
+      for(int d = 0; d < depth; ++d) {
+        nodes.accumulateCountBy(path[d], -removed);
+        childIndex.invalidate(path[d]);
+      }
+      metrics.removeChain(depth, length);
+      ++version;
+      if(childIndex.pendingSize >= ChildIndex.MAX_PENDING) {
+        indexWideNodes();
+      }
+      return removed;
+    }
+    return 0;
+  }
+
+  // -----------------
+  // Internal : PREFIX
+  // -----------------
+  // A node's subtree is the contiguous run of orders [order(node), order(node) + count(node) - 1], and the
+  // node's own string is the first of them. Walking down along s, every smaller sibling passed holds only
+  // smaller substrings and every node entered contributes its own string, which is a prefix of s and so
+  // smaller than s. O(|s| * fan-out), nothing below the path is visited.
+  long rankOf(String s) {
+    long before = 0;
+    int n = root;
+    for(int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+      int next = nodes.firstChild(n);
+      while(next != NIL && symbol(next) < c) {
+        before += nodes.count(next);
+        next = nodes.nextSibling(next);
+      }
+      if(next == NIL || symbol(next) != c) {
+        return -(before + 1);
+      }
+      n = next;
+      ++before;
+    }
+    return (n == root) ? -1 : before;
+  }
+
+  // The node whose string is s, NIL if s is not in the set, root for ""
+  int nodeOf(String s) {
+    int n = root;
+    for(int i = 0; i < s.length() && n != NIL; ++i) {
+      int code = (alphabet == null) ? s.charAt(i) : alphabet.code(s.charAt(i));
+      n = (code < 0) ? NIL : nodes.child(n, (char) code);
+    }
+    return n;
+  }
+
   // -----------------
   // Internal : GET
   // -----------------
-  String find(int order) {
+  // Only with recordQueries, concurrent readers share the histogram
+  void recordQuery(Object event, long start, long order, CharSequence found) {
+    long nanos = System.nanoTime() - start;
+    LatencyHistogram latency = metrics.queryLatency;
+    synchronized(latency) {
+      latency.record(nanos);
+    }
+    SubstringSetEvents.commitQuery(event, order, (found == null) ? 0 : found.length());
+  }
+
+  String find(long order) {
     if(order < 1 || order > size()) {
       return null;
     }
 
     StringBuilder b = new StringBuilder();
-    PartitionResult start = getPartition(root, order);
-    SuffixTrieNode n = start.getPartition();
-    int k = order - start.getNumElementsBeforePartition();
+    PartitionResult partition = getPartition(root, order, new PartitionResult());
+    int n = partition.getPartition();
+    long k = order - partition.getNumElementsBeforePartition();
     while(true) {
-      b.append(n.getC());
+      b.append(symbol(n));
       if(k == 1) {
         return b.toString();
       }
-      PartitionResult partition = getPartition(n, k-1);
+      getPartition(n, k-1, partition);
+      n = partition.getPartition();
+      k -= (partition.getNumElementsBeforePartition() + 1);
+    }
+  }
+
+  // Same walk as find, only counting the depth. The node's witness then locates the substring as the
+  // depth chars ending at its end offset in its source.
+  CharSequence findView(long order) {
+    if(order < 1 || order > size()) {
+      return null;
+    }
+
+    PartitionResult partition = getPartition(root, order, new PartitionResult());
+    int n = partition.getPartition();
+    long k = order - partition.getNumElementsBeforePartition();
+    int depth = 1;
+    while(k != 1) {
+      getPartition(n, k-1, partition);
       n = partition.getPartition();
       k -= (partition.getNumElementsBeforePartition() + 1);
+      ++depth;
     }
+    int end = nodes.witnessEnd[n];
+    return CharBuffer.wrap(sources.get(nodes.witnessSource[n]), end - depth, end);
   }
 
-  PartitionResult getPartition(SuffixTrieNode n, int k) {
-    int numElementsBeforePartition = 0;
-    Map<Character, SuffixTrieNode> children = n.getChildren();
-    Iterator<Character> i = n.getChildren().keySet().iterator();
-    while(i.hasNext()) {
-      SuffixTrieNode next = children.get(i.next());
-      if(numElementsBeforePartition + next.getCount() < k) {
-        numElementsBeforePartition += next.getCount();
+  // The distinct valid orders are sorted and then answered by one DFS that only descends into a child
+  // if some requested order falls into that child's range. The orders of a subtree form a contiguous
+  // run of the sorted array, so every visited node scans its children once for the whole batch.
+  // Iterative, with an explicit stack of
+  //   ( next child to look at, orders before that child, [lo, hi) run of orders in the subtree )
+  // and one shared char buffer for the current path. Results are mapped back to the request order by
+  // a binary search of each request in the sorted orders.
+  String[] findAll(long[] orders) {
+    long[] sorted = new long[orders.length];
+    int valid = 0;
+    for(long order : orders) {
+      if(order >= 1 && order <= size()) {
+        sorted[valid++] = order;
+      }
+    }
+    Arrays.sort(sorted, 0, valid);
+    int hi = 0;
+    for(int i = 0; i < valid; ++i) {
+      if(hi == 0 || sorted[hi - 1] != sorted[i]) {
+        sorted[hi++] = sorted[i];
+      }
+    }
+    String[] found = new String[hi];
+
+    int[] stChild = new int[16];
+    long[] stBefore = new long[16];
+    int[] stLo = new int[16];
+    int[] stHi = new int[16];
+    char[] path = new char[16];
+    int top = 0;
+    stChild[0] = nodes.firstChild(root);
+    stBefore[0] = 0;
+    stLo[0] = 0;
+    stHi[0] = hi;
+    while(top >= 0) {
+      int c = stChild[top];
+      if(c == NIL || stLo[top] >= stHi[top]) {
+        --top;
+        continue;
+      }
+      int lo = stLo[top];
+      long before = stBefore[top];
+      long last = before + nodes.count(c);
+      int j = lo;
+      while(j < stHi[top] && sorted[j] <= last) {
+        ++j;
+      }
+      stChild[top] = nodes.nextSibling(c);
+      stBefore[top] = last;
+      stLo[top] = j;
+      if(j == lo) {
         continue;
       }
-      return new PartitionResult(numElementsBeforePartition, next);
+
+      // c is at depth (top + 1), its own string is the first order of its range
+      if(top == path.length) {
+        path = Arrays.copyOf(path, path.length * 2);
+      }
+      path[top] = symbol(c);
+      if(sorted[lo] == before + 1) {
+        found[lo++] = new String(path, 0, top + 1);
+      }
+      if(lo < j) {
+        if(++top == stChild.length) {
+          int capacity = stChild.length * 2;
+          stChild = Arrays.copyOf(stChild, capacity);
+          stBefore = Arrays.copyOf(stBefore, capacity);
+          stLo = Arrays.copyOf(stLo, capacity);
+          stHi = Arrays.copyOf(stHi, capacity);
+        }
+        stChild[top] = nodes.firstChild(c);
+        stBefore[top] = before + 1;
+        stLo[top] = lo;
+        stHi[top] = j;
+      }
+    }
+    String[] results = new String[orders.length];
+    for(int i = 0; i < orders.length; ++i) {
+      int at = Arrays.binarySearch(sorted, 0, hi, orders[i]);
+      results[i] = (at >= 0) ? found[at] : null;
     }
-    return new PartitionResult(numElementsBeforePartition, null);
+    return results;
   }
 
-  @Value
-  class PartitionResult {
-    final int numElementsBeforePartition;
-    final SuffixTrieNode partition;
-    /**
-    PartitionResult(int numElementsBeforePartition, SuffixTrieNode partition) {
-      this.numElementsBeforePartition = numElementsBeforePartition;
-      this.partition = partition;
+  // The char of node n's label
+  char symbol(int n) {
+    char c = nodes.label(n);
+    return (alphabet == null) ? c : alphabet.symbol(c);
+  }
+
+  PartitionResult getPartition(int n, long k) {
+    return getPartition(n, k, new PartitionResult());
+  }
+
+  // Fills in ( and returns ) the given result, so that a walk can re-use one instance for every level.
+  // Wide nodes are answered by a binary search over their cumulative child counts ( see ChildIndex ),
+  // the rest by a linear scan of the sibling list. Only reads : the index is maintained by the writes,
+  // so any number of threads may query a set that is not being modified.
+  PartitionResult getPartition(int n, long k, PartitionResult result) {
+    int e = childIndex.entryOf(n);
+    if(e != NIL && childIndex.isFresh(e)) {
+      return childIndex.partition(e, k, result);
     }
-    public int getNumElementsBeforePartition() {
-      return numElementsBeforePartition;
+
+    long numElementsBeforePartition = 0;
+    for(int next = nodes.firstChild(n); next != NIL; next = nodes.nextSibling(next)) {
+      if(numElementsBeforePartition + nodes.count(next) < k) {
+        numElementsBeforePartition += nodes.count(next);
+        continue;
+      }
+      return result.set(numElementsBeforePartition, next);
     }
-    public SuffixTrieNode getPartition() {
-      return partition;
+    return result.set(numElementsBeforePartition, NIL);
+  }
+
+  @Getter
+  static class PartitionResult {
+    long numElementsBeforePartition;
+    int partition;
+
+    PartitionResult set(long numElementsBeforePartition, int partition) {
+      this.numElementsBeforePartition = numElementsBeforePartition;
+      this.partition = partition;
+      return this;
     }
-    */
   }
 
   // -----------------
   // Internal : Core Data-Structures
   // -----------------
-  @Getter
-  @AllArgsConstructor(access = AccessLevel.PRIVATE)
-  static class SuffixTrieNode {
-    final Character c;
-    final TreeMap<Character, SuffixTrieNode> children;
-    int count;
+  // Struct-of-arrays trie nodes addressed by int ids. Children of a node form a sibling list
+  // sorted by label.
+  // Counts are 'compact' : a count that fits in an int is stored in counts[n] directly, a larger one
+  // is stored in bigCounts[~counts[n]] ( so counts[n] < 0 ). Only the few nodes near the root of a
+  // huge trie need the 8 byte slot, every other node stays at 4 bytes.
+  // Labels are either a char[] or, with an alphabet, labelBits wide codes packed back to back into a long[]
+  // ( a label may straddle two words ).
+  static class NodeStore {
+    char[] labels;
+    long[] packedLabels;
+    int labelBits;
+    int[] counts;
+    int[] firstChild;
+    int[] nextSibling;
+    // slots in use, including the free ones
+    int size;
+    long[] bigCounts;
+    int bigSize;
+    // references per node ( suffixes passing through it ), null unless tracked, see remove
+    int[] refs;
+    // freed slots, linked through nextSibling
+    int freeList;
+    int freeCount;
+    // number of create calls, so that a caller can tell whether childOrCreate created
+    int creations;
+    // pages ( of 2^pageBits nodes ) written since the last clear, null unless tracked, see ConcurrentSubstringSet
+    BitSet dirtyPages;
+    int pageBits;
+    // ( source id, end offset ) of an occurrence of each node's substring, null unless tracked, see findView
+    int[] witnessSource;
+    int[] witnessEnd;
 
-    public void accumulateCountBy(int k) {
-      count += k;
+    NodeStore() {
+      this(16);
     }
 
-    static public SuffixTrieNode createFor(char c) {
-      return new SuffixTrieNode(c, new TreeMap<>(), 1);
+    NodeStore(int capacity) {
+      this.labels = new char[capacity];
+      this.counts = new int[capacity];
+      this.firstChild = new int[capacity];
+      this.nextSibling = new int[capacity];
+      this.size = 0;
+      this.bigCounts = new long[0];
+      this.bigSize = 0;
+      this.freeList = NIL;
     }
 
-    /**
-    private SuffixTrieNode(Character c, TreeMap<Character, SuffixTrieNode> children, int count) {
-      this.c = c;
-      this.children = children;
-      this.count = count;
+    int size() {
+      return size;
+    }
+
+    int capacity() {
+      return counts.length;
+    }
+
+    // Switches an empty store to packed labels of the given width
+    void packLabels(int bits) {
+      assert(size == 0);
+      this.labelBits = bits;
+      this.packedLabels = new long[packedWords(capacity(), bits)];
+      this.labels = null;
+    }
+
+    // nodes in the trie, ie. size() less the freed slots
+    int liveCount() {
+      return size - freeCount;
+    }
+
+    void trackReferences() {
+      this.refs = new int[capacity()];
+    }
+
+    void trackWitnesses() {
+      this.witnessSource = new int[capacity()];
+      this.witnessEnd = new int[capacity()];
+    }
+
+    void witness(int n, int source, int end) {
+      witnessSource[n] = source;
+      witnessEnd[n] = end;
+    }
+
+    char label(int n) {
+      return (packedLabels == null) ? labels[n] : unpack(packedLabels, labelBits, n);
+    }
+
+    void setLabel(int n, char c) {
+      if(packedLabels == null) {
+        labels[n] = c;
+      } else {
+        pack(packedLabels, labelBits, n, c);
+      }
+    }
+
+    static int packedWords(int count, int bits) {
+      return (int) (((long) count * bits + 63) >>> 6);
+    }
+
+    static char unpack(long[] words, int bits, int n) {
+      long bit = (long) n * bits;
+      int word = (int) (bit >>> 6);
+      int shift = (int) bit & 63;
+      long v = words[word] >>> shift;
+      if(shift + bits > 64) {
+        v |= words[word + 1] << (64 - shift);
+      }
+      return (char) (v & ((1L << bits) - 1));
+    }
+
+    static void pack(long[] words, int bits, int n, char c) {
+      long mask = (1L << bits) - 1;
+      long v = c & mask;
+      long bit = (long) n * bits;
+      int word = (int) (bit >>> 6);
+      int shift = (int) bit & 63;
+      words[word] = (words[word] & ~(mask << shift)) | (v << shift);
+      if(shift + bits > 64) {
+        int spill = shift + bits - 64;
+        words[word + 1] = (words[word + 1] & ~((1L << spill) - 1)) | (v >>> (64 - shift));
+      }
+    }
+
+    long count(int n) {
+      int c = counts[n];
+      return (c >= 0) ? c : bigCounts[~c];
+    }
+
+    int firstChild(int n) {
+      return firstChild[n];
+    }
+
+    int nextSibling(int n) {
+      return nextSibling[n];
+    }
+
+    // Marks all pages dirty and from now on every page that is written to
+    void trackDirtyPages(int pageBits) {
+      this.pageBits = pageBits;
+      this.dirtyPages = new BitSet();
+      if(size > 0) {
+        dirtyPages.set(0, ((size - 1) >>> pageBits) + 1);
+      }
+    }
+
+    void touch(int n) {
+      if(dirtyPages != null) {
+        dirtyPages.set(n >>> pageBits);
+      }
+    }
+
+    void accumulateCountBy(int n, long k) {
+      touch(n);
+      int c = counts[n];
+      if(c < 0) {
+        bigCounts[~c] += k;
+      } else if(c + k <= Integer.MAX_VALUE) {
+        counts[n] = (int) (c + k);
+      } else {
+        counts[n] = ~newBigCount(c + k);
+      }
+    }
+
+    int newBigCount(long count) {
+      if(bigSize == bigCounts.length) {
+        bigCounts = Arrays.copyOf(bigCounts, bigCounts.length * 2 + 4);
+      }
+      bigCounts[bigSize] = count;
+      return bigSize++;
+    }
+
+    int create(char c, int count) {
+      int n;
+      if(freeList != NIL) {
+        n = freeList;
+        freeList = nextSibling[n];
+        --freeCount;
+      } else {
+        if(size == capacity()) {
+          grow();
+        }
+        n = size++;
+      }
+      ++creations;
+      touch(n);
+      if(refs != null) {
+        refs[n] = 1;
+      }
+      setLabel(n, c);
+      counts[n] = count;
+      firstChild[n] = NIL;
+      nextSibling[n] = NIL;
+      return n;
+    }
+
+    // Returns the child of n labelled c, or NIL
+    int child(int n, char c) {
+      int next = firstChild[n];
+      while(next != NIL && label(next) < c) {
+        next = nextSibling[next];
+      }
+      return (next != NIL && label(next) == c) ? next : NIL;
+    }
+
+    // Takes child c out of n's sibling list
+    void unlink(int n, int c) {
+      if(firstChild[n] == c) {
+        touch(n);
+        firstChild[n] = nextSibling[c];
+        return;
+      }
+      int prev = firstChild[n];
+      while(nextSibling[prev] != c) {
+        prev = nextSibling[prev];
+      }
+      touch(prev);
+      nextSibling[prev] = nextSibling[c];
+    }
+
+    // The slot's children are cleared, so that a freed node never looks wide to the ChildIndex
+    void free(int n) {
+      touch(n);
+      firstChild[n] = NIL;
+      nextSibling[n] = freeList;
+      freeList = n;
+      ++freeCount;
+    }
+
+    // Returns the child of n labelled c, creating it ( with count 1 ) in sorted position if missing
+    int childOrCreate(int n, char c) {
+      int prev = NIL;
+      int next = firstChild[n];
+      while(next != NIL && label(next) < c) {
+        prev = next;
+        next = nextSibling[next];
+      }
+      if(next != NIL && label(next) == c) {
+        return next;
+      }
+      int created = create(c, 1);
+      nextSibling[created] = next;
+      if(prev == NIL) {
+        touch(n);
+        firstChild[n] = created;
+      } else {
+        touch(prev);
+        nextSibling[prev] = created;
+      }
+      return created;
+    }
+
+    void grow() {
+      ensureCapacity(capacity() + (capacity() >> 1) + 16);
+    }
+
+    void ensureCapacity(int capacity) {
+      if(capacity <= capacity()) {
+        return;
+      }
+      if(packedLabels == null) {
+        labels = Arrays.copyOf(labels, capacity);
+      } else {
+        packedLabels = Arrays.copyOf(packedLabels, packedWords(capacity, labelBits));
+      }
+      counts = Arrays.copyOf(counts, capacity);
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      nextSibling = Arrays.copyOf(nextSibling, capacity);
+      if(refs != null) {
+        refs = Arrays.copyOf(refs, capacity);
+      }
+      if(witnessSource != null) {
+        witnessSource = Arrays.copyOf(witnessSource, capacity);
+        witnessEnd = Arrays.copyOf(witnessEnd, capacity);
+      }
+    }
+
+    // Bytes held by the arrays ( capacity, not size ), object headers ignored
+    long estimatedBytes() {
+      long labelBytes = (packedLabels == null) ? 2L * labels.length : 8L * packedLabels.length;
+      return labelBytes + 4L * counts.length + 4L * firstChild.length + 4L * nextSibling.length
+          + 8L * bigCounts.length + ((refs == null) ? 0 : 4L * refs.length)
+          + ((witnessSource == null) ? 0 : 8L * witnessSource.length);
+    }
+
+    // Appends all nodes of other except its root ( node 0 ), re-numbered by a constant offset.
+    // Returns the new id of other's first node, i.e. of its root's first child.
+    int appendAll(NodeStore other) {
+      int base = size;
+      int n = other.size - 1;
+      ensureCapacity(size + n);
+      if(packedLabels == null) {
+        System.arraycopy(other.labels, 1, labels, base, n);
+      } else {
+        for(int i = 0; i < n; ++i) {
+          setLabel(base + i, other.label(i + 1));
+        }
+      }
+      System.arraycopy(other.counts, 1, counts, base, n);
+      int offset = base - 1;
+      for(int i = 0; i < n; ++i) {
+        if(counts[base + i] < 0) {
+          counts[base + i] = ~newBigCount(other.count(i + 1));
+        }
+        int c = other.firstChild[i + 1];
+        int s = other.nextSibling[i + 1];
+        firstChild[base + i] = (c == NIL) ? NIL : c + offset;
+        nextSibling[base + i] = (s == NIL) ? NIL : s + offset;
+      }
+      size += n;
+      if(dirtyPages != null && n > 0) {
+        dirtyPages.set(base >>> pageBits, ((size - 1) >>> pageBits) + 1);
+      }
+      return base;
+    }
+  }
+
+  // Cumulative child counts of the 'wide' nodes ( at least WIDE children ), so that their partition is
+  // found by a binary search instead of a linear scan. In a suffix-trie only the few nodes near the root
+  // are wide, the long chains further down have one or two children, so the index is kept off the
+  // NodeStore : a BitSet marks the indexed nodes ( 1 bit per node ) and an open-addressing map takes
+  // them to their entry. An entry holds the child ids and the running sums of their counts.
+  // Only the writes change the index, the queries just read it. A write marks the entries on its path
+  // stale and notes the node that gained a child. refresh(), called before the write returns ( or earlier
+  // once MAX_PENDING nodes are noted ), re-builds the stale entries and indexes the nodes that became
+  // wide. A stale entry that is not re-built ( its node lost children, or its slot was freed and re-used )
+  // is not used, until the node grows back to WIDE children and it is re-built.
+  static class ChildIndex {
+    static final int WIDE = 8;
+    static final int MAX_PENDING = 1 << 16;
+
+    final BitSet indexed;
+    int[] keys;
+    int[] values;
+    int[][] children;
+    long[][] cum;
+    int[] fanout;
+    boolean[] fresh;
+    int entries;
+    // nodes to look at in the next refresh
+    int[] pending;
+    int pendingSize;
+
+    ChildIndex() {
+      this.indexed = new BitSet();
+      this.keys = new int[16];
+      this.values = new int[16];
+      Arrays.fill(keys, NIL);
+      this.children = new int[4][];
+      this.cum = new long[4][];
+      this.fanout = new int[4];
+      this.fresh = new boolean[4];
+      this.entries = 0;
+      this.pending = new int[16];
+      this.pendingSize = 0;
+    }
+
+    int entryOf(int n) {
+      if(!indexed.get(n)) {
+        return NIL;
+      }
+      int mask = keys.length - 1;
+      for(int i = hash(n) & mask; ; i = (i + 1) & mask) {
+        if(keys[i] == n) {
+          return values[i];
+        }
+      }
+    }
+
+    boolean isFresh(int e) {
+      return fresh[e];
+    }
+
+    void invalidate(int n) {
+      if(indexed.get(n)) {
+        int e = entryOf(n);
+        if(fresh[e]) {
+          fresh[e] = false;
+          enqueue(n);
+        }
+      }
+    }
+
+    // n gained a child, so it may be wide ( again ) now. A fresh entry is invalidated by the write anyway.
+    void grew(int n) {
+      if(!indexed.get(n) || !fresh[entryOf(n)]) {
+        enqueue(n);
+      }
+    }
+
+    void enqueue(int n) {
+      if(pendingSize == pending.length) {
+        pending = Arrays.copyOf(pending, pendingSize * 2);
+      }
+      pending[pendingSize++] = n;
+    }
+
+    void refresh(NodeStore nodes) {
+      for(int i = 0; i < pendingSize; ++i) {
+        int n = pending[i];
+        int e = entryOf(n);
+        // noted more than once and already re-built
+        if(e != NIL && fresh[e]) {
+          continue;
+        }
+        if(isWide(nodes, n)) {
+          index(nodes, n);
+        }
+      }
+      pendingSize = 0;
+      if(pending.length > MAX_PENDING) {
+        pending = new int[16];
+      }
+    }
+
+    // Indexes every wide node, for a store that was filled without going through the insert path
+    void indexAll(NodeStore nodes) {
+      pendingSize = 0;
+      for(int n = 0; n < nodes.size(); ++n) {
+        if(isWide(nodes, n)) {
+          index(nodes, n);
+        }
+      }
+    }
+
+    static boolean isWide(NodeStore nodes, int n) {
+      int count = 0;
+      for(int c = nodes.firstChild(n); c != NIL && count < WIDE; c = nodes.nextSibling(c)) {
+        ++count;
+      }
+      return count == WIDE;
+    }
+
+    // (Re-)builds the entry of n from the sibling list
+    int index(NodeStore nodes, int n) {
+      int e = entryOf(n);
+      if(e == NIL) {
+        e = newEntry(n);
+      }
+      int count = 0;
+      for(int c = nodes.firstChild(n); c != NIL; c = nodes.nextSibling(c)) {
+        ++count;
+      }
+      if(children[e] == null || children[e].length < count) {
+        children[e] = new int[count + (count >> 2)];
+        cum[e] = new long[count + (count >> 2)];
+      }
+      int i = 0;
+      long sum = 0;
+      for(int c = nodes.firstChild(n); c != NIL; c = nodes.nextSibling(c), ++i) {
+        sum += nodes.count(c);
+        children[e][i] = c;
+        cum[e][i] = sum;
+      }
+      fanout[e] = count;
+      fresh[e] = true;
+      return e;
+    }
+
+    PartitionResult partition(int e, long k, PartitionResult result) {
+      long[] sums = cum[e];
+      int lo = 0;
+      int hi = fanout[e];
+      while(lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if(sums[mid] < k) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      long before = (lo == 0) ? 0 : sums[lo - 1];
+      return result.set(before, (lo == fanout[e]) ? NIL : children[e][lo]);
+    }
+
+    int newEntry(int n) {
+      if(entries == children.length) {
+        int capacity = entries * 2;
+        children = Arrays.copyOf(children, capacity);
+        cum = Arrays.copyOf(cum, capacity);
+        fanout = Arrays.copyOf(fanout, capacity);
+        fresh = Arrays.copyOf(fresh, capacity);
+      }
+      if(2 * (entries + 1) > keys.length) {
+        rehash(keys.length * 2);
+      }
+      int e = entries++;
+      put(n, e);
+      indexed.set(n);
+      return e;
     }
-    public Character getC() {
-      return c;
+
+    void put(int n, int e) {
+      int mask = keys.length - 1;
+      int i = hash(n) & mask;
+      while(keys[i] != NIL) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = n;
+      values[i] = e;
     }
-    public TreeMap<Character, SuffixTrieNode> getChildren() {
-      return children;
+
+    void rehash(int capacity) {
+      int[] oldKeys = keys;
+      int[] oldValues = values;
+      keys = new int[capacity];
+      values = new int[capacity];
+      Arrays.fill(keys, NIL);
+      for(int i = 0; i < oldKeys.length; ++i) {
+        if(oldKeys[i] != NIL) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
     }
-    public int getCount() {
-      return count;
+
+    long estimatedBytes() {
+      long bytes = indexed.size() / 8 + 4L * keys.length + 4L * values.length + 5L * fanout.length
+          + 4L * pending.length;
+      for(int e = 0; e < entries; ++e) {
+        bytes += 4L * children[e].length + 8L * cum[e].length;
+      }
+      return bytes;
+    }
+
+    static int hash(int n) {
+      int h = n * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+
+  // Construction and query counters behind stats(). Nodes per depth are kept as a difference array :
+  // a new chain adds one node to every depth in [from, to], which is two increments here and one
+  // prefix sum in nodesAtDepth().
+  static class Metrics {
+    long insertedChars;
+    long insertNanos;
+    int maxDepth;
+    long[] depthDelta;
+    // null unless queries are recorded, guarded by itself as readers share it
+    LatencyHistogram queryLatency;
+
+    Metrics() {
+      this.depthDelta = new long[16];
+    }
+
+    void recordInsert(long chars, long nanos) {
+      insertedChars += chars;
+      insertNanos += nanos;
+    }
+
+    void recordChain(int from, int to) {
+      if(to + 1 >= depthDelta.length) {
+        depthDelta = Arrays.copyOf(depthDelta, to + 2 + ((to + 2) >> 1));
+      }
+      ++depthDelta[from];
+      --depthDelta[to + 1];
+      if(to > maxDepth) {
+        maxDepth = to;
+      }
+    }
+
+    void removeChain(int from, int to) {
+      --depthDelta[from];
+      ++depthDelta[to + 1];
+    }
+
+    void mergeDepths(Metrics other) {
+      if(other.depthDelta.length > depthDelta.length) {
+        depthDelta = Arrays.copyOf(depthDelta, other.depthDelta.length);
+      }
+      for(int d = 0; d < other.depthDelta.length; ++d) {
+        depthDelta[d] += other.depthDelta[d];
+      }
+      maxDepth = Math.max(maxDepth, other.maxDepth);
+    }
+
+    // nodesAtDepth[d] = number of nodes at depth d, the root being the one node at depth 0. maxDepth is a
+    // high-water mark, the depths emptied by remove are cut off.
+    long[] nodesAtDepth() {
+      long[] atDepth = new long[maxDepth + 1];
+      atDepth[0] = 1;
+      long running = 0;
+      int deepest = 0;
+      for(int d = 1; d <= maxDepth; ++d) {
+        running += depthDelta[d];
+        atDepth[d] = running;
+        if(running > 0) {
+          deepest = d;
+        }
+      }
+      return Arrays.copyOf(atDepth, deepest + 1);
+    }
+
+    long estimatedBytes() {
+      return 8L * depthDelta.length + ((queryLatency == null) ? 0 : 8L * LatencyHistogram.BUCKETS);
     }
-    */
   }
 
   // -----------------
@@ -263,27 +1629,31 @@ public class SubstringSet {
   // -----------------
   public void show() {
     visitDfs(root, (n) -> {
-      System.out.println(String.format("%c|%d", n.getC(), n.getCount()));
+      System.out.println(String.format("%c|%d", symbol(n), nodes.count(n)));
     });
     visitBfs(root, (n) -> {
       StringBuilder b = new StringBuilder();
     });
   }
 
-  void visitDfs(SuffixTrieNode n, Consumer<SuffixTrieNode> v) {
+  void visitDfs(int n, IntConsumer v) {
     v.accept(n);
-    for(SuffixTrieNode c : n.getChildren().values()) {
+    for(int c = nodes.firstChild(n); c != NIL; c = nodes.nextSibling(c)) {
       visitDfs(c, v);
     }
   }
 
-  void visitBfs(SuffixTrieNode n, Consumer<SuffixTrieNode> v) {
-    Deque<SuffixTrieNode> q = new ArrayDeque<>();
-    q.add(n);
-    while(!q.isEmpty()) {
-      SuffixTrieNode next = q.poll();
+  void visitBfs(int n, IntConsumer v) {
+    int[] q = new int[nodes.size()];
+    int head = 0;
+    int tail = 0;
+    q[tail++] = n;
+    while(head < tail) {
+      int next = q[head++];
       v.accept(next);
-      next.getChildren().values().forEach(q::push);
+      for(int c = nodes.firstChild(next); c != NIL; c = nodes.nextSibling(c)) {
+        q[tail++] = c;
+      }
     }
   }
 }
@@ -0,0 +1,209 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDK Flight Recorder events of SubstringSet, so that slow inserts and queries can be lined up with GC
+ * pauses and safepoints in the same recording.
+ *
+ * Within a recording every insert is recorded but only the queries slower than 1 ms, as there are
+ * millions of fast ones ( override in a custom .jfc ) :
+ *   java -XX:StartFlightRecording=filename=run.jfr ...
+ *   jfr print --events findstrings.SubstringSet.Insert run.jfr
+ * Queries are only recorded by a set built with recordQueries(true).
+ *
+ * Design :
+ * - jdk.jfr is not part of the Java 8 API ( it came with 8u262 ), so no class here links against it : the
+ *   event types are defined at runtime through jdk.jfr.EventFactory, looked up reflectively once. Without
+ *   jdk.jfr ENABLED is false, begin*() return null and commit*() ignore it, so the rest of the code only
+ *   ever sees Object and compiles and runs on any Java 8.
+ * - Every event type caches whether it is enabled in a volatile flag, refreshed by a FlightRecorderListener
+ *   when a recording starts or stops. Outside of a recording begin*() is one volatile read and returns
+ *   null, so nothing is created, boxed or called reflectively.
+ *
+ * Costs : within a recording that enables the type, an event is a reflective newEvent / begin / set per
+ * field / commit with boxed values, ~300 ns. It is paid by every insert, and by every get(k) of a set with
+ * recordQueries(true) even if the query ends up under the threshold, as the duration is only known at the
+ * end. Without a recording, recordQueries(true) still costs its histogram : two nanoTime() calls and a
+ * lock, ~100 ns on a ~1 us get(k) over a-z strings of length 80.
+ */
+final class SubstringSetEvents {
+
+  static final EventType INSERT = EventType.define("findstrings.SubstringSet.Insert", "SubstringSet Insert",
+      "Insert of all the suffixes of one string", null,
+      new String[] { "length", "added", "nodes" },
+      new String[] { "String Length", "Added Substrings", "Node Count" },
+      new Class<?>[] { int.class, long.class, int.class });
+  static final EventType QUERY = EventType.define("findstrings.SubstringSet.Query", "SubstringSet Query",
+      "get(k) of the k-th distinct substring", "1 ms",
+      new String[] { "order", "length" },
+      new String[] { "Order", "Result Length" },
+      new Class<?>[] { long.class, int.class });
+  static final boolean ENABLED = (INSERT != null && QUERY != null);
+
+  static {
+    if(ENABLED) {
+      listen();
+    }
+  }
+
+  private SubstringSetEvents() {
+  }
+
+  static Object beginInsert() {
+    return (INSERT == null) ? null : INSERT.begin();
+  }
+
+  static void commitInsert(Object event, int length, long added, int nodes) {
+    if(event != null) {
+      INSERT.commit(event, length, added, nodes);
+    }
+  }
+
+  static Object beginQuery() {
+    return (QUERY == null) ? null : QUERY.begin();
+  }
+
+  static void commitQuery(Object event, long order, int length) {
+    if(event != null) {
+      QUERY.commit(event, order, length);
+    }
+  }
+
+  static void refresh() {
+    INSERT.refresh();
+    QUERY.refresh();
+  }
+
+  // Refreshes the enabled flags whenever a recording changes state. If the listener can not be added
+  // ( eg. no FlightRecorderPermission ), the events are always created and JFR drops the disabled ones.
+  static void listen() {
+    try {
+      ClassLoader loader = ClassLoader.getSystemClassLoader();
+      Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener", true, loader);
+      Object proxy = Proxy.newProxyInstance(loader, new Class<?>[] { listener }, (p, method, args) -> {
+        switch(method.getName()) {
+          case "recordingStateChanged":
+            refresh();
+            return null;
+          case "hashCode":
+            return System.identityHashCode(p);
+          case "equals":
+            return p == args[0];
+          case "toString":
+            return "SubstringSetEvents.listener";
+          default:
+            return null;
+        }
+      });
+      Class.forName("jdk.jfr.FlightRecorder", true, loader).getMethod("addListener", listener).invoke(null, proxy);
+      refresh();
+    } catch(ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException
+        | SecurityException e) {
+      INSERT.enabled = true;
+      QUERY.enabled = true;
+    }
+  }
+
+  // One event type made by jdk.jfr.EventFactory, its events are driven through reflection
+  static final class EventType {
+    final Object factory;
+    final Object type;
+    final Method isEnabled;
+    final Method newEvent;
+    final Method begin;
+    final Method set;
+    final Method commit;
+    // cached type.isEnabled(), see listen()
+    volatile boolean enabled;
+
+    EventType(Object factory, Object type, Method isEnabled, Method newEvent, Method begin, Method set,
+        Method commit) {
+      this.factory = factory;
+      this.type = type;
+      this.isEnabled = isEnabled;
+      this.newEvent = newEvent;
+      this.begin = begin;
+      this.set = set;
+      this.commit = commit;
+    }
+
+    // null if the running JDK has no jdk.jfr
+    static EventType define(String name, String label, String description, String threshold,
+        String[] fields, String[] fieldLabels, Class<?>[] fieldTypes) {
+      try {
+        ClassLoader loader = ClassLoader.getSystemClassLoader();
+        Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor", true, loader);
+        Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory", true, loader);
+        Class<?> event = Class.forName("jdk.jfr.Event", true, loader);
+        Constructor<?> element = annotationElement.getConstructor(Class.class, Object.class);
+        Constructor<?> descriptor = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+        List<Object> annotations = new ArrayList<>();
+        annotations.add(element.newInstance(Class.forName("jdk.jfr.Name", true, loader), name));
+        annotations.add(element.newInstance(Class.forName("jdk.jfr.Label", true, loader), label));
+        annotations.add(element.newInstance(Class.forName("jdk.jfr.Description", true, loader), description));
+        annotations.add(element.newInstance(Class.forName("jdk.jfr.Category", true, loader),
+            new String[] { "findstrings" }));
+        annotations.add(element.newInstance(Class.forName("jdk.jfr.StackTrace", true, loader), false));
+        if(threshold != null) {
+          annotations.add(element.newInstance(Class.forName("jdk.jfr.Threshold", true, loader), threshold));
+        }
+        List<Object> values = new ArrayList<>();
+        for(int i = 0; i < fields.length; ++i) {
+          Object fieldLabel = element.newInstance(Class.forName("jdk.jfr.Label", true, loader), fieldLabels[i]);
+          values.add(descriptor.newInstance(fieldTypes[i], fields[i], Collections.singletonList(fieldLabel)));
+        }
+        Object factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, values);
+        Object type = eventFactory.getMethod("getEventType").invoke(factory);
+        return new EventType(factory, type, Class.forName("jdk.jfr.EventType", true, loader).getMethod("isEnabled"),
+            eventFactory.getMethod("newEvent"), event.getMethod("begin"),
+            event.getMethod("set", int.class, Object.class), event.getMethod("commit"));
+      } catch(ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+        return null;
+      } catch(InvocationTargetException | LinkageError e) {
+        // present but not usable, eg. JFR disabled in this VM
+        return null;
+      }
+    }
+
+    void refresh() {
+      try {
+        enabled = (Boolean) isEnabled.invoke(type);
+      } catch(IllegalAccessException | InvocationTargetException e) {
+        enabled = true;
+      }
+    }
+
+    // null while no recording enables this type
+    Object begin() {
+      if(!enabled) {
+        return null;
+      }
+      try {
+        Object e = newEvent.invoke(factory);
+        begin.invoke(e);
+        return e;
+      } catch(IllegalAccessException | InvocationTargetException e) {
+        throw new IllegalStateException("Could not begin a JFR event", e);
+      }
+    }
+
+    void commit(Object e, Object... values) {
+      try {
+        for(int i = 0; i < values.length; ++i) {
+          set.invoke(e, i, values[i]);
+        }
+        commit.invoke(e);
+      } catch(IllegalAccessException | InvocationTargetException ex) {
+        throw new IllegalStateException(String.format("Could not commit JFR event %s", Arrays.toString(values)), ex);
+      }
+    }
+  }
+}
@@ -0,0 +1,57 @@
+import lombok.Getter;
+
+/**
+ * Point-in-time snapshot of SubstringSet.stats().
+ *
+ * - size : distinct substrings
+ * - nodeCount : trie nodes, including the root
+ * - insertedChars : total length of the inserted strings
+ * - nodesPerInsertedChar : nodeCount / insertedChars, up to m / 2 for a string of length m with no
+ *   repeats, so it shows how much of the O(n * m^2) worst case the input actually hits
+ * - maxDepth, nodesAtDepth : depth distribution of the nodes, nodesAtDepth[0] being the root
+ * - estimatedBytes : array capacity held by the set ( node store, child index, path buffer, counters and
+ *   the kept sources, if any ), object headers ignored
+ * - insertNanos : wall time spent in insert / buildParallel
+ * - queryLatency : copy of the get(k) latency histogram, empty unless built with recordQueries
+ */
+@Getter
+public class SubstringSetStats {
+
+  final long size;
+  final int nodeCount;
+  final long insertedChars;
+  final double nodesPerInsertedChar;
+  final int maxDepth;
+  final long[] nodesAtDepth;
+  final long estimatedBytes;
+  final long insertNanos;
+  final LatencyHistogram queryLatency;
+
+  SubstringSetStats(SubstringSet set) {
+    SubstringSet.Metrics metrics = set.metrics;
+    this.size = set.size();
+    this.nodeCount = set.nodes.liveCount();
+    this.insertedChars = metrics.insertedChars;
+    this.nodesPerInsertedChar = (insertedChars == 0) ? 0 : (double) nodeCount / insertedChars;
+    this.nodesAtDepth = metrics.nodesAtDepth();
+    this.maxDepth = nodesAtDepth.length - 1;
+    this.estimatedBytes = set.nodes.estimatedBytes() + set.childIndex.estimatedBytes() + 4L * set.path.length
+        + metrics.estimatedBytes() + ((set.sources == null) ? 0 : 2L * insertedChars);
+    this.insertNanos = metrics.insertNanos;
+    LatencyHistogram latency = metrics.queryLatency;
+    if(latency == null) {
+      this.queryLatency = new LatencyHistogram();
+    } else {
+      synchronized(latency) {
+        this.queryLatency = latency.copy();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("size=%d nodes=%d nodesPerChar=%.2f maxDepth=%d estimatedMB=%.1f insertMs=%d queries=[%s]",
+        size, nodeCount, nodesPerInsertedChar, maxDepth, estimatedBytes / (1024.0 * 1024.0),
+        insertNanos / 1_000_000, queryLatency);
+  }
+}
@@ -0,0 +1,289 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offline, read-only 'k-th distinct substring' index over a suffix-array and LCP-array.
+ *
+ * Reasoning :
+ * When every string is known before the first query ( the HackerRank input is exactly this shape :
+ * read all strings, then answer all queries ) we do not need an incrementally updatable structure.
+ * A suffix-array of the concatenated input is built in O(N) with SA-IS and takes a handful of
+ * int[] of length N instead of a trie node per character of every suffix.
+ *
+ * Design :
+ * a. Text
+ * - t = s_1 $_1 s_2 $_2 ... s_n $_n where every separator $_i is unique and smaller than every
+ *   character. Unique separators mean that no common prefix ( LCP ) can run across the end of a
+ *   string, and 'smaller' keeps a string ordered before its extensions ( "ab" < "abc" ).
+ * - Characters are remapped to their rank among the characters actually present, so the alphabet
+ *   given to SA-IS is n + (number of distinct chars) instead of 65536.
+ *
+ * b. Order query
+ * - Walking the suffixes in suffix-array order, the prefixes of sa[j] of length lcp[j] + 1 ..
+ *   validLength(sa[j]) are exactly the distinct substrings that have not been seen before, and they
+ *   come out in lexicographic order.
+ * - cum[j] is the prefix-sum of those counts, so the k-th distinct substring lives in the first j
+ *   with cum[j] >= k ( binary search ) and is the prefix of sa[j] of length
+ *     lcp[j] + (k - cum[j - 1])
+ *
+ * Eg. { "aab", "aac" } => t = aab$1aac$2
+ *   j  suffix   lcp  new  cum
+ *   0  $1aac$2  0    0    0
+ *   1  $2       0    0    0
+ *   2  aab$1    0    3    3    ( a, aa, aab )
+ *   3  aac$2    2    1    4    ( aac )
+ *   4  ab$1     1    1    5    ( ab )
+ *   5  ac$2     1    1    6    ( ac )
+ *   6  b$1      0    1    7    ( b )
+ *   7  c$2      0    1    8    ( c )
+ *   find(4) => j=3, length = 2 + (4 - 3) = 3 => 'aac'
+ */
+public class SuffixArraySet {
+
+  final char[] text;
+  final int[] sa;
+  final int[] lcp;
+  final long[] cum;
+
+  SuffixArraySet(char[] text, int[] sa, int[] lcp, long[] cum) {
+    this.text = text;
+    this.sa = sa;
+    this.lcp = lcp;
+    this.cum = cum;
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public static SuffixArraySet of(List<String> strings) {
+    return build(strings);
+  }
+
+  public long size() {
+    return (cum.length == 0) ? 0 : cum[cum.length - 1];
+  }
+
+  public String get(long k) {
+    return find(k);
+  }
+
+  // -----------------
+  // Internal : BUILD
+  // -----------------
+  static SuffixArraySet build(List<String> strings) {
+    int n = strings.size();
+    int length = n;
+    for(String s : strings) {
+      length += s.length();
+    }
+
+    // dense ranks of the characters that are present
+    boolean[] present = new boolean[Character.MAX_VALUE + 1];
+    for(String s : strings) {
+      for(int i = 0; i < s.length(); ++i) {
+        present[s.charAt(i)] = true;
+      }
+    }
+    int[] rank = new int[Character.MAX_VALUE + 1];
+    int alphabet = 0;
+    for(int c = 0; c <= Character.MAX_VALUE; ++c) {
+      if(present[c]) {
+        rank[c] = n + alphabet++;
+      }
+    }
+
+    char[] text = new char[length];
+    int[] t = new int[length];
+    int p = 0;
+    for(int i = 0; i < n; ++i) {
+      String s = strings.get(i);
+      for(int j = 0; j < s.length(); ++j, ++p) {
+        text[p] = s.charAt(j);
+        t[p] = rank[s.charAt(j)];
+      }
+      t[p++] = i;
+    }
+
+    int[] sa = suffixArray(t, n + alphabet - 1);
+    int[] lcp = lcpArray(t, sa);
+
+    // validLength(p) = distance from p to the next separator
+    int[] validLength = new int[length];
+    for(int i = length - 1; i >= 0; --i) {
+      validLength[i] = (t[i] < n) ? 0 : validLength[i + 1] + 1;
+    }
+    long[] cum = new long[length];
+    long total = 0;
+    for(int j = 0; j < length; ++j) {
+      total += validLength[sa[j]] - lcp[j];
+      cum[j] = total;
+    }
+    return new SuffixArraySet(text, sa, lcp, cum);
+  }
+
+  // SA-IS ( Nong, Zhang & Chan ), s[i] in [0, upper]
+  static int[] suffixArray(int[] s, int upper) {
+    int n = s.length;
+    if(n == 0) {
+      return new int[0];
+    }
+    if(n == 1) {
+      return new int[] { 0 };
+    }
+    if(n == 2) {
+      return (s[0] < s[1]) ? new int[] { 0, 1 } : new int[] { 1, 0 };
+    }
+
+    int[] sa = new int[n];
+    boolean[] ls = new boolean[n];
+    for(int i = n - 2; i >= 0; --i) {
+      ls[i] = (s[i] == s[i + 1]) ? ls[i + 1] : (s[i] < s[i + 1]);
+    }
+    int[] sumL = new int[upper + 1];
+    int[] sumS = new int[upper + 1];
+    for(int i = 0; i < n; ++i) {
+      if(!ls[i]) {
+        ++sumS[s[i]];
+      } else {
+        ++sumL[s[i] + 1];
+      }
+    }
+    for(int i = 0; i <= upper; ++i) {
+      sumS[i] += sumL[i];
+      if(i < upper) {
+        sumL[i + 1] += sumS[i];
+      }
+    }
+
+    int[] lmsMap = new int[n + 1];
+    Arrays.fill(lmsMap, -1);
+    int m = 0;
+    for(int i = 1; i < n; ++i) {
+      if(!ls[i - 1] && ls[i]) {
+        lmsMap[i] = m++;
+      }
+    }
+    int[] lms = new int[m];
+    for(int i = 1, j = 0; i < n; ++i) {
+      if(!ls[i - 1] && ls[i]) {
+        lms[j++] = i;
+      }
+    }
+
+    induce(s, sa, ls, sumS, sumL, lms);
+
+    if(m > 0) {
+      int[] sortedLms = new int[m];
+      for(int i = 0, j = 0; i < n; ++i) {
+        if(lmsMap[sa[i]] != -1) {
+          sortedLms[j++] = sa[i];
+        }
+      }
+      int[] recS = new int[m];
+      int recUpper = 0;
+      recS[lmsMap[sortedLms[0]]] = 0;
+      for(int i = 1; i < m; ++i) {
+        int l = sortedLms[i - 1];
+        int r = sortedLms[i];
+        int endL = (lmsMap[l] + 1 < m) ? lms[lmsMap[l] + 1] : n;
+        int endR = (lmsMap[r] + 1 < m) ? lms[lmsMap[r] + 1] : n;
+        boolean same = true;
+        if(endL - l != endR - r) {
+          same = false;
+        } else {
+          while(l < endL && s[l] == s[r]) {
+            ++l;
+            ++r;
+          }
+          if(l == n || s[l] != s[r]) {
+            same = false;
+          }
+        }
+        if(!same) {
+          ++recUpper;
+        }
+        recS[lmsMap[sortedLms[i]]] = recUpper;
+      }
+
+      int[] recSa = suffixArray(recS, recUpper);
+      for(int i = 0; i < m; ++i) {
+        sortedLms[i] = lms[recSa[i]];
+      }
+      induce(s, sa, ls, sumS, sumL, sortedLms);
+    }
+    return sa;
+  }
+
+  static void induce(int[] s, int[] sa, boolean[] ls, int[] sumS, int[] sumL, int[] lms) {
+    int n = s.length;
+    Arrays.fill(sa, -1);
+    int[] buf = sumS.clone();
+    for(int d : lms) {
+      if(d != n) {
+        sa[buf[s[d]]++] = d;
+      }
+    }
+    buf = sumL.clone();
+    sa[buf[s[n - 1]]++] = n - 1;
+    for(int i = 0; i < n; ++i) {
+      int v = sa[i];
+      if(v >= 1 && !ls[v - 1]) {
+        sa[buf[s[v - 1]]++] = v - 1;
+      }
+    }
+    buf = sumL.clone();
+    for(int i = n - 1; i >= 0; --i) {
+      int v = sa[i];
+      if(v >= 1 && ls[v - 1]) {
+        sa[--buf[s[v - 1] + 1]] = v - 1;
+      }
+    }
+  }
+
+  // Kasai et al. lcp[j] = LCP(sa[j - 1], sa[j]). Never runs across a separator as they are unique.
+  static int[] lcpArray(int[] s, int[] sa) {
+    int n = s.length;
+    int[] rnk = new int[n];
+    for(int i = 0; i < n; ++i) {
+      rnk[sa[i]] = i;
+    }
+    int[] lcp = new int[n];
+    int h = 0;
+    for(int i = 0; i < n; ++i) {
+      if(h > 0) {
+        --h;
+      }
+      if(rnk[i] == 0) {
+        h = 0;
+        continue;
+      }
+      int j = sa[rnk[i] - 1];
+      while(i + h < n && j + h < n && s[i + h] == s[j + h]) {
+        ++h;
+      }
+      lcp[rnk[i]] = h;
+    }
+    return lcp;
+  }
+
+  // -----------------
+  // Internal : GET
+  // -----------------
+  String find(long order) {
+    if(order < 1 || order > size()) {
+      return null;
+    }
+    int lo = 0;
+    int hi = cum.length - 1;
+    while(lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if(cum[mid] < order) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    long before = (lo == 0) ? 0 : cum[lo - 1];
+    return new String(text, sa[lo], lcp[lo] + (int) (order - before));
+  }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generalized suffix automaton implementation of SubstringIndex.
+ *
+ * Reasoning :
+ * The suffix-trie in SubstringSet adds every suffix of every string and so pays O(n * m^2) to
+ * build ( test cases 5 and 6 time out on construction, not on queries ). A suffix automaton
+ * recognizes exactly the same set of substrings, but shares the common 'right contexts' of
+ * substrings in a single state, so it has at most 2 * (total length) states and is built online
+ * in O(total length * log(alphabet)) time.
+ *
+ * Design :
+ * a. Construction
+ * - Standard online construction, generalized to multiple strings by restarting 'last' at the
+ *   root for each string and re-using ( or splitting ) an existing transition instead of always
+ *   creating a new state.
+ * - Every state v represents len(v) - len(link(v)) distinct substrings, so the number of new
+ *   substrings added by an insert is tracked incrementally. Cloning a state does not change the
+ *   total, only the creation of a new state does.
+ *
+ * b. Order query
+ * - Every distinct substring is exactly one path from the root. Each state keeps the number of
+ *   distinct paths starting at it ( including the empty path ), which is
+ *     count(v) = 1 + sum(count(w)) for all transitions v -> w
+ * - The counts are computed lazily ( after a batch of inserts ) in decreasing order of len, which
+ *   is a topological order of the automaton.
+ * - get(k) then walks down from the root exactly like SubstringSet.find, picking the transition
+ *   whose count contains the k-th path.
+ *
+ * Eg. { "aab", "aac" } =>
+ *   count(root) = 9 ( 8 substrings + the empty path ), so size() = 8
+ *   find(3) => root, 'a' has count 6 >= 3, take it ( k=2 ) => 'a' has count 3 >= 2, take it ( k=1 )
+ *           => 'b' has count 1 >= 1, take it ( k=0 ) => 'aab'
+ */
+public class SuffixAutomatonSet implements SubstringIndex {
+
+  final State root;
+  final List<State> states;
+  long distinct;
+  boolean countsValid;
+
+  public SuffixAutomatonSet() {
+    this.root = new State(0);
+    this.states = new ArrayList<>();
+    this.states.add(root);
+    this.distinct = 0;
+    this.countsValid = true;
+    this.root.count = 1;
+  }
+
+  // -----------------
+  // public API
+  // -----------------
+  public long insert(String s) {
+    long before = distinct;
+    State last = root;
+    for(int i = 0; i < s.length(); ++i) {
+      last = extend(last, s.charAt(i));
+    }
+    if(distinct != before) {
+      countsValid = false;
+    }
+    return distinct - before;
+  }
+
+  public long size() {
+    return distinct;
+  }
+
+  public String get(long k) {
+    return find(k);
+  }
+
+  // -----------------
+  // Internal : PUT
+  // -----------------
+  State extend(State last, char c) {
+    State q = last.next.get(c);
+    if(q != null) {
+      // transition already exists ( substring seen in an earlier string )
+      if(q.len == last.len + 1) {
+        return q;
+      }
+      return split(last, q, c);
+    }
+
+    State cur = newState(last.len + 1);
+    State p = last;
+    while(p != null && !p.next.containsKey(c)) {
+      p.next.put(c, cur);
+      p = p.link;
+    }
+    if(p == null) {
+      cur.link = root;
+    } else {
+      q = p.next.get(c);
+      cur.link = (p.len + 1 == q.len) ? q : split(p, q, c);
+    }
+    distinct += cur.len - cur.link.len;
+    return cur;
+  }
+
+  // Clones q so that the clone has len(p) + 1, and redirects the transitions on c of p and its
+  // suffix-links from q to the clone. Does not change the number of distinct substrings.
+  State split(State p, State q, char c) {
+    State clone = newState(p.len + 1);
+    clone.next.putAll(q.next);
+    clone.link = q.link;
+    q.link = clone;
+    while(p != null && p.next.get(c) == q) {
+      p.next.put(c, clone);
+      p = p.link;
+    }
+    return clone;
+  }
+
+  State newState(int len) {
+    State s = new State(len);
+    states.add(s);
+    return s;
+  }
+
+  // Counting sort by len gives a topological order, processed from the longest states down
+  void computeCounts() {
+    if(countsValid) {
+      return;
+    }
+    int maxLen = 0;
+    for(State s : states) {
+      maxLen = Math.max(maxLen, s.len);
+    }
+    int[] buckets = new int[maxLen + 2];
+    for(State s : states) {
+      ++buckets[s.len + 1];
+    }
+    for(int i = 1; i < buckets.length; ++i) {
+      buckets[i] += buckets[i - 1];
+    }
+    State[] ordered = new State[states.size()];
+    for(State s : states) {
+      ordered[buckets[s.len]++] = s;
+    }
+    for(int i = ordered.length - 1; i >= 0; --i) {
+      State s = ordered[i];
+      long count = 1;
+      for(State w : s.next.values()) {
+        count += w.count;
+      }
+      s.count = count;
+    }
+    countsValid = true;
+  }
+
+  // -----------------
+  // Internal : GET
+  // -----------------
+  String find(long order) {
+    if(order < 1 || order > size()) {
+      return null;
+    }
+    computeCounts();
+
+    StringBuilder b = new StringBuilder();
+    State n = root;
+    long k = order;
+    while(k > 0) {
+      for(Map.Entry<Character, State> e : n.next.entrySet()) {
+        State w = e.getValue();
+        if(k > w.count) {
+          k -= w.count;
+          continue;
+        }
+        b.append(e.getKey().charValue());
+        --k;
+        n = w;
+        break;
+      }
+    }
+    return b.toString();
+  }
+
+  // -----------------
+  // Internal : Core Data-Structures
+  // -----------------
+  static class State {
+    final int len;
+    final TreeMap<Character, State> next;
+    State link;
+    long count;
+
+    State(int len) {
+      this.len = len;
+      this.next = new TreeMap<>();
+    }
+  }
+}
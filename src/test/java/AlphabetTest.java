@@ -0,0 +1,61 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class AlphabetTest {
+
+  @Test
+  public void of_1() {
+    Alphabet a = Alphabet.of("TGCAAG");
+    assertEquals("ACGT", a.toString());
+    assertEquals(4, a.size());
+    assertEquals(2, a.bits());
+    assertEquals(0, a.code('A'));
+    assertEquals(2, a.code('G'));
+    assertEquals(-1, a.code('N'));
+    assertEquals(-1, a.code('￿'));
+    assertEquals('T', a.symbol(3));
+    assertEquals(Alphabet.DNA, a);
+  }
+
+  @Test
+  public void bits() {
+    assertEquals(5, Alphabet.LOWERCASE.bits());
+    assertEquals(1, Alphabet.of("").bits());
+    assertEquals(1, Alphabet.of("a").bits());
+    assertEquals(1, Alphabet.of("ab").bits());
+    assertEquals(2, Alphabet.of("abc").bits());
+    StringBuilder b = new StringBuilder();
+    for(char c = 0; c < 256; ++c) {
+      b.append(c);
+    }
+    assertEquals(8, Alphabet.of(b).bits());
+    assertEquals(9, Alphabet.of(b.append('ā')).bits());
+  }
+
+  @Test
+  public void detect_1() {
+    Alphabet a = Alphabet.detect(Arrays.asList("baba", "zab", ""));
+    assertEquals("abz", a.toString());
+    assertEquals(2, a.bits());
+  }
+
+  @Test
+  public void packed_labels() {
+    // 5 bit labels straddle the 64 bit words
+    SubstringSet.NodeStore nodes = new SubstringSet.NodeStore();
+    nodes.packLabels(5);
+    for(int i = 0; i < 1000; ++i) {
+      nodes.create((char) (i % 26), 1);
+    }
+    for(int i = 0; i < 1000; ++i) {
+      assertEquals((char) (i % 26), nodes.label(i));
+    }
+    nodes.setLabel(12, (char) 31);
+    assertEquals(31, nodes.label(12));
+    assertEquals(11 % 26, nodes.label(11));
+    assertEquals(13 % 26, nodes.label(13));
+  }
+}
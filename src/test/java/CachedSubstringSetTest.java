@@ -0,0 +1,112 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CachedSubstringSetTest {
+
+  SubstringSet set;
+
+  @Before
+  public void setup() {
+    set = new SubstringSet();
+    set.insert(new String(SubstringSetTest.longString(200, 1)));
+    set.insert(new String(SubstringSetTest.longString(150, 2)));
+  }
+
+  @Test
+  public void get_hit_and_miss() {
+    CachedSubstringSet s = new CachedSubstringSet(set, 4, CachedSubstringSet.Eviction.LRU);
+
+    assertEquals(set.get(10), s.get(10));
+    assertEquals(set.get(10), s.get(10));
+    assertEquals(1, s.getHits());
+    assertEquals(1, s.getMisses());
+    assertNull(s.get(0));
+    assertNull(s.get(set.size() + 1));
+    assertEquals(1, s.getMisses());
+  }
+
+  @Test
+  public void get_lru_eviction() {
+    CachedSubstringSet s = new CachedSubstringSet(set, 2, CachedSubstringSet.Eviction.LRU);
+    s.get(1);
+    s.get(2);
+    s.get(1);
+    s.get(3); // evicts 2
+    s.get(1);
+    assertEquals(2, s.getHits());
+    s.get(2);
+    assertEquals(4, s.getMisses());
+  }
+
+  @Test
+  public void get_fifo_eviction() {
+    CachedSubstringSet s = new CachedSubstringSet(set, 2, CachedSubstringSet.Eviction.FIFO);
+    s.get(1);
+    s.get(2);
+    s.get(1);
+    s.get(3); // evicts 1
+    s.get(1);
+    assertEquals(1, s.getHits());
+    assertEquals(4, s.getMisses());
+  }
+
+  @Test
+  public void get_resumes_from_checkpoint() {
+    CachedSubstringSet s = new CachedSubstringSet(set, 64, CachedSubstringSet.Eviction.LRU);
+    long mid = set.size() / 2;
+    assertEquals(set.get(mid), s.get(mid));
+    assertEquals(0, s.getCheckpointHits());
+    assertEquals(set.get(mid + 1), s.get(mid + 1));
+    assertEquals(1, s.getCheckpointHits());
+  }
+
+  @Test
+  public void get_resumes_from_enclosing_checkpoint() {
+    CachedSubstringSet s = new CachedSubstringSet(set, 1024, CachedSubstringSet.Eviction.LRU);
+    s.get(set.size() / 2);
+    CachedSubstringSet.Checkpoint outer = s.checkpointsByOrder.firstEntry().getValue();
+    // deeper checkpoints inside outer's range
+    for(long k = outer.first + 1; k < outer.first + outer.count; k += 97) {
+      s.get(k);
+    }
+    int behind = 0;
+    for(long k = outer.first + 1; k < outer.first + outer.count; ++k) {
+      if(s.results.containsKey(k) || s.checkpointsByOrder.floorEntry(k).getValue().contains(k)) {
+        continue;
+      }
+      // the closest checkpoint ends before k, outer still contains it
+      ++behind;
+      long checkpointHits = s.getCheckpointHits();
+      assertEquals(set.get(k), s.get(k));
+      assertEquals(checkpointHits + 1, s.getCheckpointHits());
+    }
+    assertTrue(behind > 0);
+  }
+
+  @Test
+  public void get_matches_set() {
+    CachedSubstringSet s = new CachedSubstringSet(set, 16, CachedSubstringSet.Eviction.LRU);
+    Random r = new Random(3);
+    long center = set.size() / 3;
+    for(int i = 0; i < 5000; ++i) {
+      long k = Math.max(1, center + r.nextInt(400) - 200);
+      assertEquals(set.get(k), s.get(k));
+    }
+    assertTrue(s.getCheckpointHits() > 0);
+  }
+
+  @Test
+  public void insert_invalidates() {
+    CachedSubstringSet s = new CachedSubstringSet(set, 16, CachedSubstringSet.Eviction.LRU);
+    String before = s.get(5);
+    set.insert("!");
+    assertEquals("!", s.get(1));
+    assertEquals(before, s.get(6));
+    assertEquals(0, s.getHits());
+  }
+
+}
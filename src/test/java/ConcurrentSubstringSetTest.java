@@ -0,0 +1,148 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentSubstringSetTest {
+
+  ConcurrentSubstringSet s;
+
+  @Before
+  public void setup() {
+    s = new ConcurrentSubstringSet();
+  }
+
+  @Test
+  public void find_kth_1() {
+    assertEquals(0, s.size());
+    assertNull(s.get(1));
+    s.insertAll(SubstringSetTest.TEST_SET_1);
+    assertEquals(14, s.size());
+
+    assertEquals("bc", s.get(13));
+    assertEquals("bab", s.get(11));
+    assertEquals("b", s.get(9));
+    assertEquals("a", s.get(1));
+    assertEquals("c", s.get(14));
+    assertEquals("ac", s.get(8));
+  }
+
+  @Test
+  public void matches_trie_random() {
+    Random r = new Random(13);
+    SubstringSet expected = new SubstringSet();
+    for(int i = 0; i < 40; ++i) {
+      String str = SuffixAutomatonSetTest.randomString(r, 1 + r.nextInt(120), 1 + r.nextInt(4));
+      assertEquals(expected.insert(str), s.insert(str));
+      assertEquals(expected.size(), s.size());
+    }
+    assertTrue(s.snapshot().getNodeCount() > 2 * ConcurrentSubstringSet.PAGE);
+    for(int k = 0; k <= expected.size() + 1; ++k) {
+      assertEquals(expected.get(k), s.get(k));
+    }
+  }
+
+  @Test
+  public void snapshot_is_isolated() {
+    s.insert("aac");
+    ConcurrentSubstringSet.Snapshot before = s.snapshot();
+    s.insert("aab");
+    assertEquals(5, before.size());
+    assertEquals("aac", before.get(3));
+    assertEquals(8, s.size());
+    assertEquals("aab", s.get(3));
+    assertTrue(s.snapshot().getVersion() > before.getVersion());
+
+    // nothing new, nothing published
+    s.insert("aa");
+    assertNotSame(before, s.snapshot());
+    ConcurrentSubstringSet.Snapshot after = s.snapshot();
+    s.insert("ab");
+    assertSame(after, s.snapshot());
+  }
+
+  @Test
+  public void snapshot_shares_clean_pages() {
+    Random r = new Random(17);
+    for(int i = 0; i < 20; ++i) {
+      s.insert(new String(SubstringSetTest.longString(100, r.nextLong())));
+    }
+    ConcurrentSubstringSet.Snapshot before = s.snapshot();
+    s.insert("zzzzzz");
+    ConcurrentSubstringSet.Snapshot after = s.snapshot();
+    int pages = before.labels.length;
+    int shared = 0;
+    for(int p = 0; p < pages; ++p) {
+      if(before.counts[p] == after.counts[p]) {
+        ++shared;
+      }
+    }
+    assertTrue(pages > 10);
+    // the root's page, the pages on the 'z..' paths and the last page
+    assertTrue(shared >= pages * 3 / 4);
+  }
+
+  @Test
+  public void concurrent_readers() throws Exception {
+    Random r = new Random(19);
+    final List<String> strings = new ArrayList<>();
+    final Map<Long, SubstringSet> versions = new HashMap<>();
+    SubstringSet expected = new SubstringSet();
+    versions.put(0L, new SubstringSet());
+    for(int i = 0; i < 30; ++i) {
+      String str = SuffixAutomatonSetTest.randomString(r, 50 + r.nextInt(150), 3);
+      strings.add(str);
+      expected.insert(str);
+      SubstringSet copy = new SubstringSet();
+      for(String prefix : strings) {
+        copy.insert(prefix);
+      }
+      versions.put(copy.size(), copy);
+    }
+
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final Thread writer = new Thread(() -> {
+      for(String str : strings) {
+        s.insert(str);
+      }
+    });
+    List<Thread> readers = new ArrayList<>();
+    for(int t = 0; t < 3; ++t) {
+      final Random rr = new Random(t);
+      readers.add(new Thread(() -> {
+        try {
+          do {
+            ConcurrentSubstringSet.Snapshot snapshot = s.snapshot();
+            SubstringSet reference = versions.get(snapshot.size());
+            assertNotNull("torn size " + snapshot.size(), reference);
+            for(int q = 0; q < 20 && reference.size() > 0; ++q) {
+              long k = 1 + (long) (rr.nextDouble() * reference.size());
+              assertEquals(reference.get(k), snapshot.get(k));
+            }
+          } while(writer.isAlive());
+        } catch(Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      }));
+    }
+    for(Thread reader : readers) {
+      reader.start();
+    }
+    writer.start();
+    writer.join();
+    for(Thread reader : readers) {
+      reader.join();
+    }
+    if(failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertEquals(expected.size(), s.size());
+  }
+}
@@ -0,0 +1,69 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucket_bounds() {
+    assertEquals(5, LatencyHistogram.bucketOf(5));
+    assertEquals(LatencyHistogram.bucketOf(960), LatencyHistogram.bucketOf(1000));
+    assertEquals(1023, LatencyHistogram.upperBound(LatencyHistogram.bucketOf(1000)));
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    for(long v = 0; v < 100000; ++v) {
+      int b = LatencyHistogram.bucketOf(v);
+      assertTrue(LatencyHistogram.upperBound(b) >= v);
+      assertTrue(b == 0 || LatencyHistogram.upperBound(b - 1) < v);
+    }
+  }
+
+  @Test
+  public void percentile_1() {
+    LatencyHistogram h = new LatencyHistogram();
+    assertEquals(0, h.percentile(0.5));
+    for(int i = 1; i <= 100; ++i) {
+      h.record(i);
+    }
+    assertEquals(100, h.count());
+    assertEquals(100, h.max());
+    assertEquals(50.5, h.mean(), 1e-9);
+    assertEquals(25, h.percentile(0.25));
+    assertEquals(100, h.percentile(1.0));
+    long p50 = h.percentile(0.5);
+    assertTrue(p50 >= 50 && p50 <= 50 * 9 / 8);
+  }
+
+  @Test
+  public void percentile_relative_error() {
+    Random r = new Random(3);
+    long[] values = new long[10000];
+    LatencyHistogram h = new LatencyHistogram();
+    for(int i = 0; i < values.length; ++i) {
+      values[i] = (long) Math.exp(r.nextDouble() * 20);
+      h.record(values[i]);
+    }
+    Arrays.sort(values);
+    for(double p : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+      long exact = values[(int) Math.ceil(p * values.length) - 1];
+      long approx = h.percentile(p);
+      assertTrue(approx >= exact);
+      assertTrue(approx <= exact + exact / LatencyHistogram.SUB + 1);
+    }
+  }
+
+  @Test
+  public void copy_and_reset() {
+    LatencyHistogram h = new LatencyHistogram();
+    h.record(10);
+    LatencyHistogram copy = h.copy();
+    h.reset();
+    h.record(-1);
+    assertEquals(1, copy.count());
+    assertEquals(10, copy.max());
+    assertEquals(1, h.count());
+    assertEquals(0, h.max());
+  }
+}
@@ -0,0 +1,123 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LineIngestTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  SubstringSet s;
+  Path file;
+
+  @Before
+  public void setup() throws IOException {
+    s = new SubstringSet();
+    file = tmp.newFile("corpus.txt").toPath();
+  }
+
+  @Test
+  public void insert_lines_1() throws IOException {
+    Files.write(file, "aac\nabc\r\n\naab\nbaba".getBytes(StandardCharsets.US_ASCII));
+    assertEquals(14, s.insertLines(file, StandardCharsets.US_ASCII, null));
+    assertEquals(14, s.size());
+    assertEquals("bc", s.get(13));
+    assertEquals("bab", s.get(11));
+    assertEquals("c", s.get(14));
+    assertEquals(13, s.stats().getInsertedChars());
+  }
+
+  @Test
+  public void insert_lines_with_witnesses() throws IOException {
+    s = SubstringSet.builder().witnesses(true).build();
+    Files.write(file, "aac\nabc\r\n\naab\nbaba".getBytes(StandardCharsets.US_ASCII));
+    s.insertLines(file, StandardCharsets.US_ASCII, null);
+    assertEquals(4, s.sources.size());
+    for(int k = 1; k <= s.size(); ++k) {
+      assertEquals(s.get(k), s.getView(k).toString());
+    }
+  }
+
+  @Test
+  public void insert_lines_windows() throws IOException {
+    Random r = new Random(23);
+    List<String> lines = new ArrayList<>();
+    SubstringSet expected = new SubstringSet();
+    for(int i = 0; i < 50; ++i) {
+      String line = SuffixAutomatonSetTest.randomString(r, r.nextInt(30), 1 + r.nextInt(4));
+      lines.add(line);
+      expected.insert(line);
+    }
+    Files.write(file, lines, StandardCharsets.US_ASCII);
+
+    // windows smaller than the file, but larger than any line
+    final long[] last = new long[3];
+    long added = LineIngest.insertLines(s, file, StandardCharsets.US_ASCII,
+        (done, total, count) -> { last[0] = done; last[1] = total; last[2] = count; }, 64);
+    assertEquals(expected.size(), added);
+    assertEquals(expected.size(), s.size());
+    for(int k = 0; k <= expected.size() + 1; ++k) {
+      assertEquals(expected.get(k), s.get(k));
+    }
+    assertEquals(Files.size(file), last[0]);
+    assertEquals(Files.size(file), last[1]);
+    assertEquals(lines.stream().filter(l -> !l.isEmpty()).count(), last[2]);
+  }
+
+  @Test(expected = IOException.class)
+  public void insert_lines_longer_than_window() throws IOException {
+    Files.write(file, Arrays.asList("abcdefghijklmnopqrstuvwxyz", "ab"), StandardCharsets.US_ASCII);
+    LineIngest.insertLines(s, file, StandardCharsets.US_ASCII, null, 16);
+  }
+
+  @Test
+  public void insert_lines_rejects_multi_byte_newlines() throws IOException {
+    Files.write(file, Arrays.asList("ab", "ba"), StandardCharsets.UTF_16LE);
+    for(Charset charset : Arrays.asList(StandardCharsets.UTF_16, StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE,
+        Charset.forName("UTF-32"))) {
+      try {
+        s.insertLines(file, charset, null);
+        fail(charset.name());
+      } catch(IllegalArgumentException expected) {
+      }
+    }
+    assertEquals(0, s.size());
+    assertTrue(LineIngest.byteDelimited(StandardCharsets.UTF_8));
+    assertTrue(LineIngest.byteDelimited(Charset.forName("windows-1252")));
+  }
+
+  @Test
+  public void insert_lines_latin1_and_utf8() throws IOException {
+    List<String> lines = Arrays.asList("café", "naïve", "abc");
+    SubstringSet expected = new SubstringSet();
+    lines.forEach(expected::insert);
+
+    Files.write(file, lines, StandardCharsets.ISO_8859_1);
+    s.insertLines(file, StandardCharsets.ISO_8859_1, null);
+    assertEquals(expected.size(), s.size());
+    for(int k = 1; k <= expected.size(); ++k) {
+      assertEquals(expected.get(k), s.get(k));
+    }
+
+    s = new SubstringSet();
+    Files.write(file, lines, StandardCharsets.UTF_8);
+    s.insertLines(file, StandardCharsets.UTF_8, null);
+    assertEquals(expected.size(), s.size());
+    for(int k = 1; k <= expected.size(); ++k) {
+      assertEquals(expected.get(k), s.get(k));
+    }
+  }
+}
@@ -0,0 +1,206 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedSubstringIndexTest {
+
+  final static List<String> TEST_SET_1 = Arrays.asList(
+      "aac",
+      "abc",
+      "aab",
+      "baba"
+  );
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  SubstringSet s;
+  Path file;
+
+  @Before
+  public void setup() throws IOException {
+    s = new SubstringSet();
+    file = tmp.newFile("index.ssix").toPath();
+  }
+
+  @Test
+  public void save_and_open_1() throws IOException {
+    TEST_SET_1.forEach(s::insert);
+    s.save(file);
+
+    MappedSubstringIndex m = MappedSubstringIndex.open(file);
+    assertEquals(14, m.size());
+    assertEquals("bc", m.get(13));
+    assertEquals("bab", m.get(11));
+    assertEquals("b", m.get(9));
+    assertEquals("a", m.get(1));
+    assertEquals("c", m.get(14));
+    assertEquals("ac", m.get(8));
+    assertNull(m.get(0));
+    assertNull(m.get(15));
+  }
+
+  @Test
+  public void save_and_open_matches_trie() throws IOException {
+    Arrays.asList("mississippi", "missouri", "ohio", "iowa").forEach(s::insert);
+    s.save(file);
+
+    MappedSubstringIndex m = MappedSubstringIndex.open(file);
+    assertEquals(s.size(), m.size());
+    int n = s.nodes.size();
+    assertEquals(24 + 4 * (n + 1) + 4 * n + 8 * ((n + 3) / 4), Files.size(file));
+    for(int k = 1; k <= s.size(); ++k) {
+      assertEquals(s.get(k), m.get(k));
+    }
+  }
+
+  @Test
+  public void save_and_open_64bit_counts() throws IOException {
+    s.insert("a");
+    s.insert("b");
+    long extra = 3000000000L;
+    int a = s.getPartition(s.root, 1).getPartition();
+    s.nodes.accumulateCountBy(a, extra);
+    s.nodes.accumulateCountBy(s.root, extra);
+    s.save(file);
+
+    MappedSubstringIndex m = MappedSubstringIndex.open(file);
+    assertEquals(extra + 2, m.size());
+    assertEquals("a", m.get(1));
+    assertEquals("b", m.get(extra + 2));
+    assertNull(m.get(extra + 3));
+  }
+
+  @Test
+  public void save_and_open_after_remove() throws IOException {
+    s = new SubstringSet(true);
+    TEST_SET_1.forEach(s::insert);
+    s.remove("baba");
+    s.remove("abc");
+    s.save(file);
+
+    MappedSubstringIndex m = MappedSubstringIndex.open(file);
+    assertEquals(8, m.size());
+    assertEquals(s.nodes.liveCount(), m.nodeCount);
+    for(int k = 0; k <= 9; ++k) {
+      assertEquals(s.get(k), m.get(k));
+    }
+  }
+
+  @Test
+  public void save_and_open_packed_labels() throws IOException {
+    List<String> strings = Arrays.asList("mississippi", "missouri", "ohio", "iowa");
+    s = SubstringSet.builder().alphabet(Alphabet.detect(strings)).build();
+    strings.forEach(s::insert);
+    s.save(file);
+
+    // 10 symbols => 4 bit labels
+    int n = s.nodes.size();
+    assertEquals(24 + 4 * (n + 1) + 4 * n + 8 * ((4 * n + 63) / 64) + 2 * 10, Files.size(file));
+    MappedSubstringIndex m = MappedSubstringIndex.open(file);
+    assertEquals(s.size(), m.size());
+    for(int k = 0; k <= s.size() + 1; ++k) {
+      assertEquals(s.get(k), m.get(k));
+    }
+  }
+
+  @Test
+  public void load_and_insert() throws IOException {
+    s.insert("mississippi");
+    s.save(file);
+
+    SubstringSet loaded = MappedSubstringIndex.open(file).load(Integer.MAX_VALUE);
+    assertEquals(s.size(), loaded.size());
+    assertEquals(s.nodes.liveCount(), loaded.nodes.liveCount());
+    assertEquals(s.insert("missouri"), loaded.insert("missouri"));
+    for(int k = 0; k <= s.size() + 1; ++k) {
+      assertEquals(s.get(k), loaded.get(k));
+    }
+  }
+
+  @Test
+  public void load_packed_labels_and_64bit_counts() throws IOException {
+    s = SubstringSet.builder().alphabet(Alphabet.DNA).build();
+    s.insert("GATTACA");
+    long extra = 3000000000L;
+    int a = s.getPartition(s.root, 1).getPartition();
+    s.nodes.accumulateCountBy(a, extra);
+    s.nodes.accumulateCountBy(s.root, extra);
+    s.save(file);
+
+    SubstringSet loaded = MappedSubstringIndex.open(file).load(Integer.MAX_VALUE);
+    assertEquals(Alphabet.DNA, loaded.alphabet);
+    assertEquals(s.size(), loaded.size());
+    assertEquals(s.get(s.size()), loaded.get(loaded.size()));
+    assertEquals("A", loaded.get(1));
+  }
+
+  @Test
+  public void save_and_open_empty() throws IOException {
+    s.save(file);
+
+    MappedSubstringIndex m = MappedSubstringIndex.open(file);
+    assertEquals(0, m.size());
+    assertNull(m.get(1));
+  }
+
+  @Test
+  public void save_and_open_empty_alphabet() throws IOException {
+    s = SubstringSet.builder().alphabet(Alphabet.detect(Arrays.asList("", ""))).build();
+    s.insert("");
+    s.save(file);
+
+    MappedSubstringIndex m = MappedSubstringIndex.open(file);
+    assertEquals(0, m.size());
+    assertNull(m.get(1));
+    SubstringSet loaded = m.load(Integer.MAX_VALUE);
+    assertEquals(0, loaded.size());
+    assertEquals(s.alphabet, loaded.alphabet);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void insert_is_unsupported() throws IOException {
+    s.save(file);
+    MappedSubstringIndex.open(file).insert("a");
+  }
+
+  @Test(expected = IOException.class)
+  public void open_rejects_other_files() throws IOException {
+    Files.write(file, "not an index".getBytes("UTF-8"));
+    MappedSubstringIndex.open(file);
+  }
+
+  @Test
+  public void size_limit() throws IOException {
+    // 10 bytes per node with char labels, 8.25 with ACGT
+    assertEquals(24 + 4 * 11 + 4 * 10 + 8 * 3, MappedSubstringIndex.fileBytes(10, 0, 16, 0));
+    MappedSubstringIndex.checkSize(MappedSubstringIndex.fileBytes(200_000_000, 0, 16, 0));
+    MappedSubstringIndex.checkSize(MappedSubstringIndex.fileBytes(250_000_000, 0, 2, 4));
+    try {
+      MappedSubstringIndex.checkSize(MappedSubstringIndex.fileBytes(220_000_000, 0, 16, 0));
+      fail();
+    } catch(IOException expected) {
+      assertTrue(expected.getMessage().contains("single mapping"));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void open_rejects_files_over_2gb() throws IOException {
+    // sparse, nothing is written
+    try(RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+      f.setLength(MappedSubstringIndex.MAX_BYTES + 1);
+    }
+    MappedSubstringIndex.open(file);
+  }
+
+}
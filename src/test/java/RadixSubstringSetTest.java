@@ -0,0 +1,106 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RadixSubstringSetTest {
+
+  final static List<String> TEST_SET_1 = Arrays.asList(
+      "aac",
+      "abc",
+      "aab",
+      "baba"
+  );
+
+  final static List<String> TEST_SET_2 = Arrays.asList(
+      "aac",
+      "aab"
+  );
+
+  RadixSubstringSet s;
+
+  @Before
+  public void setup() {
+    s = new RadixSubstringSet();
+  }
+
+  @Test
+  public void insert_1() {
+    assertEquals(1, s.insert("a"));
+    assertEquals(2, s.insert("ab"));
+    assertEquals(1, s.insert("ba"));
+    assertEquals(3, s.insert("bad"));
+
+    assertEquals(7, s.size());
+  }
+
+  @Test
+  public void insert_duplicates() {
+    s.insert("aa");
+    assertEquals(0, s.insert("aa"));
+    assertEquals(0, s.insert("a"));
+
+    assertEquals(2, s.size());
+    assertEquals(1, s.sources.size());
+  }
+
+  @Test
+  public void insert_compresses_chains() {
+    s.insert("abcd");
+
+    assertEquals(10, s.size());
+    assertEquals(5, s.nodeCount());
+    assertEquals("bc", s.find(6));
+  }
+
+  @Test
+  public void find_kth_1() {
+    insert(TEST_SET_1, 14);
+
+    assertEquals("bc", s.find(13));
+    assertEquals("bab", s.find(11));
+    assertEquals("b", s.find(9));
+    assertEquals("a", s.find(1));
+    assertEquals("c", s.find(14));
+    assertEquals("ac", s.find(8));
+  }
+
+  @Test
+  public void find_kth_2() {
+    insert(TEST_SET_2, 8);
+
+    assertEquals("aab", s.find(3));
+    assertEquals("c", s.find(8));
+    assertNull(s.find(23));
+    assertNull(s.find(0));
+  }
+
+  @Test
+  public void matches_trie_random() {
+    Random r = new Random(17);
+    for(int round = 0; round < 50; ++round) {
+      SubstringSet expected = new SubstringSet();
+      RadixSubstringSet actual = new RadixSubstringSet();
+      int nStrings = 1 + r.nextInt(6);
+      for(int i = 0; i < nStrings; ++i) {
+        String str = SuffixAutomatonSetTest.randomString(r, r.nextInt(30), 1 + r.nextInt(4));
+        assertEquals(expected.insert(str), actual.insert(str));
+      }
+      assertEquals(expected.size(), actual.size());
+      assertTrue(actual.nodeCount() <= expected.nodes.size());
+      for(int k = 0; k <= expected.size() + 1; ++k) {
+        assertEquals(expected.get(k), actual.get(k));
+      }
+    }
+  }
+
+  void insert(List<String> samples, int expectedSize) {
+    samples.forEach(s::insert);
+    assertEquals(expectedSize, s.size());
+  }
+
+}
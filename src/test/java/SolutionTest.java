@@ -0,0 +1,76 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SolutionTest {
+
+  static String run(String input, int threads) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Solution.FastWriter w = new Solution.FastWriter(out);
+    Solution.Pipeline.run(new Solution.FastReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))),
+        w, false, threads);
+    return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void pipelined_1() throws IOException {
+    assertEquals("aab\nc\nINVALID\n", run("2\naab\naac\n3\n3\n8\n23\n", 2));
+  }
+
+  @Test
+  public void pipelined_keeps_input_order() throws IOException {
+    Random r = new Random(59);
+    SubstringSet s = new SubstringSet();
+    StringBuilder input = new StringBuilder();
+    input.append(20).append('\n');
+    for(int i = 0; i < 20; ++i) {
+      String str = SuffixAutomatonSetTest.randomString(r, 1 + r.nextInt(40), 4);
+      s.insert(str);
+      input.append(str).append('\n');
+    }
+    int nQueries = 5 * Solution.Pipeline.CHUNK + 17;
+    StringBuilder expected = new StringBuilder();
+    input.append(nQueries).append('\n');
+    for(int i = 0; i < nQueries; ++i) {
+      int k = r.nextInt((int) s.size() + 10);
+      input.append(k).append('\n');
+      String result = s.get(k);
+      expected.append((result != null) ? result : "INVALID").append('\n');
+    }
+    for(int threads = 1; threads <= 4; ++threads) {
+      assertEquals(expected.toString(), run(input.toString(), threads));
+    }
+  }
+
+  static int readInt(String line) throws IOException {
+    return new Solution.FastReader(new ByteArrayInputStream(line.getBytes(StandardCharsets.US_ASCII))).readInt();
+  }
+
+  @Test
+  public void read_int() throws IOException {
+    assertEquals(42, readInt("42\n"));
+    assertEquals(7, readInt(" +7 \r\n"));
+    assertEquals(-3, readInt("-3"));
+    assertEquals(Integer.MAX_VALUE, readInt("2147483647\n"));
+    assertEquals(Integer.MIN_VALUE, readInt("-2147483648\n"));
+    for(String bad : new String[] { "\n", "-\n", "12a\n", "1 2\n", "0x10\n", "2147483648\n", "-2147483649\n",
+        "99999999999\n" }) {
+      try {
+        readInt(bad);
+        fail(bad);
+      } catch(NumberFormatException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void pipelined_no_queries() throws IOException {
+    assertEquals("", run("1\nabc\n0\n", 2));
+  }
+}
@@ -0,0 +1,98 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpillingSubstringSetTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Path dir;
+
+  @Before
+  public void setup() throws IOException {
+    dir = tmp.newFolder("shards").toPath();
+  }
+
+  @Test
+  public void insert_1() {
+    SpillingSubstringSet s = new SpillingSubstringSet(dir, 1);
+    SubstringSetTest.TEST_SET_1.forEach(s::insert);
+    SubstringSet expected = new SubstringSet();
+    SubstringSetTest.TEST_SET_1.forEach(expected::insert);
+    assertEquals(expected.size(), s.size());
+    for(int k = 0; k <= s.size() + 1; ++k) {
+      assertEquals(expected.get(k), s.get(k));
+    }
+    assertTrue(s.getSpills() > 0);
+    assertTrue(s.getLoads() > 0);
+  }
+
+  @Test
+  public void matches_substring_set() {
+    Random r = new Random(47);
+    for(int round = 0; round < 10; ++round) {
+      int budget = 1 + r.nextInt(300);
+      SpillingSubstringSet s = new SpillingSubstringSet(dir, budget);
+      SubstringSet expected = new SubstringSet();
+      for(int batch = 0; batch < 4; ++batch) {
+        List<String> strings = new ArrayList<>();
+        for(int i = 0; i < 1 + r.nextInt(5); ++i) {
+          strings.add(SuffixAutomatonSetTest.randomString(r, r.nextInt(30), 1 + r.nextInt(6)));
+        }
+        long added = 0;
+        for(String str : strings) {
+          added += expected.insert(str);
+        }
+        assertEquals(added, r.nextBoolean() ? s.insertAll(strings) : strings.stream().mapToLong(s::insert).sum());
+        assertEquals(expected.size(), s.size());
+        for(int k = 1; k <= s.size(); ++k) {
+          assertEquals(expected.get(k), s.get(k));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void budget_holds() {
+    SpillingSubstringSet s = new SpillingSubstringSet(dir, 2000);
+    Random r = new Random(53);
+    for(int i = 0; i < 50; ++i) {
+      s.insert(SuffixAutomatonSetTest.randomString(r, 40, 8));
+      // only the shard inserted last may exceed the budget on its own
+      assertTrue(s.getResidentNodes() <= 2000 || s.resident.size() == 1);
+    }
+    int resident = 0;
+    for(SpillingSubstringSet.Shard shard : s.resident.values()) {
+      resident += shard.set.nodes.liveCount();
+    }
+    assertEquals(resident, s.getResidentNodes());
+    assertTrue(s.getSpills() > 0);
+  }
+
+  @Test
+  public void close_deletes_shards() throws IOException {
+    SpillingSubstringSet s = new SpillingSubstringSet(dir, 1);
+    s.insert("abcabc");
+    assertTrue(Files.list(dir).count() > 0);
+    s.close();
+    assertEquals(0, Files.list(dir).count());
+    assertEquals(0, s.size());
+    assertNull(s.get(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void budget_must_be_positive() {
+    new SpillingSubstringSet(dir, 0);
+  }
+}
@@ -0,0 +1,118 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SubstringRangeTest {
+
+  static List<String> expected(SubstringSet set, long from, long to) {
+    List<String> l = new ArrayList<>();
+    for(long k = from; k <= to; ++k) {
+      l.add(set.get(k));
+    }
+    return l;
+  }
+
+  @Test
+  public void iterate_all_1() {
+    SubstringSet set = new SubstringSet();
+    set.insert("aab");
+    set.insert("aac");
+    List<String> l = new ArrayList<>();
+    for(Iterator<CharSequence> it = set.iterator(1, set.size()); it.hasNext(); ) {
+      l.add(it.next().toString());
+    }
+    assertEquals(expected(set, 1, set.size()), l);
+  }
+
+  @Test
+  public void iterate_every_range() {
+    SubstringSet set = new SubstringSet();
+    set.insert("abcab");
+    set.insert("bcaa");
+    set.insert("c");
+    for(long from = 1; from <= set.size(); ++from) {
+      for(long to = from - 1; to <= set.size(); ++to) {
+        List<String> l = set.stream(from, to).map(CharSequence::toString).collect(Collectors.toList());
+        assertEquals(expected(set, from, to), l);
+      }
+    }
+  }
+
+  @Test
+  public void iterate_clamped() {
+    SubstringSet set = new SubstringSet();
+    set.insert("ab");
+    assertEquals(expected(set, 1, 3), set.stream(-5, 100).map(CharSequence::toString).collect(Collectors.toList()));
+    assertEquals(0, set.stream(4, 10).count());
+    assertEquals(0, new SubstringSet().stream(1, 10).count());
+  }
+
+  @Test
+  public void iterate_with_alphabet() {
+    SubstringSet set = SubstringSet.builder().alphabet(Alphabet.DNA).build();
+    set.insert("GATTACA");
+    set.insert("CAT");
+    assertEquals(expected(set, 1, set.size()),
+        set.stream(1, set.size()).map(CharSequence::toString).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void view_is_reused() {
+    SubstringSet set = new SubstringSet();
+    set.insert("ab");
+    Iterator<CharSequence> it = set.iterator(1, 3);
+    CharSequence a = it.next();
+    assertEquals("a", a.toString());
+    CharSequence ab = it.next();
+    assertSame(a, ab);
+    assertEquals(2, ab.length());
+    assertEquals('b', ab.charAt(1));
+    assertEquals("b", ab.subSequence(1, 2).toString());
+  }
+
+  @Test
+  public void split_sizes() {
+    SubstringSet set = new SubstringSet();
+    set.insert(SuffixAutomatonSetTest.randomString(new Random(7), 200, 4));
+    Spliterator<CharSequence> s = set.spliterator(1, set.size());
+    assertEquals(set.size(), s.estimateSize());
+    Spliterator<CharSequence> upper = s.trySplit();
+    assertNotNull(upper);
+    assertEquals(set.size(), s.estimateSize() + upper.estimateSize());
+    assertTrue(s.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED));
+
+    Spliterator<CharSequence> small = set.spliterator(1, SubstringRange.MIN_SPLIT);
+    assertNull(small.trySplit());
+  }
+
+  @Test
+  public void parallel_stream() {
+    SubstringSet set = new SubstringSet();
+    Random r = new Random(11);
+    for(int i = 0; i < 20; ++i) {
+      set.insert(SuffixAutomatonSetTest.randomString(r, 60, 3));
+    }
+    long from = 17;
+    long to = set.size() - 5;
+    List<String> l = set.stream(from, to).parallel().map(CharSequence::toString).collect(Collectors.toList());
+    assertEquals(expected(set, from, to), l);
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void insert_during_iteration() {
+    SubstringSet set = new SubstringSet();
+    set.insert("abc");
+    Iterator<CharSequence> it = set.iterator(1, set.size());
+    it.next();
+    set.insert("xyz");
+    it.next();
+  }
+}
@@ -0,0 +1,126 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SubstringServerTest {
+
+  SubstringSet s;
+  SubstringServer server;
+
+  @Before
+  public void setup() throws IOException {
+    s = new SubstringSet();
+    SubstringSetTest.TEST_SET_1.forEach(s::insert);
+    server = new SubstringServer(s, new InetSocketAddress("127.0.0.1", 0));
+  }
+
+  @After
+  public void teardown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  public void handle_1() {
+    assertEquals("OK 14\n", server.handle("SIZE"));
+    assertEquals("OK bc\n", server.handle("GET 13"));
+    assertEquals("OK bab\n", server.handle("get  11 "));
+    assertEquals("NONE\n", server.handle("GET 15"));
+    assertEquals("OK a\nNONE\nOK c\n", server.handle("BATCH 1 0 14"));
+    assertNull(server.handle("QUIT"));
+    assertTrue(server.handle("GET").startsWith("ERR"));
+    assertTrue(server.handle("GET x").startsWith("ERR"));
+    assertTrue(server.handle("PUT abc").startsWith("ERR"));
+    assertEquals(5, server.latency().count());
+    assertTrue(server.handle("STATS").startsWith("OK count=5 "));
+  }
+
+  @Test
+  public void handle_index_failure() throws Exception {
+    SubstringIndex failing = new SubstringIndex() {
+      public long insert(String str) {
+        throw new UnsupportedOperationException();
+      }
+
+      public long size() {
+        return 2;
+      }
+
+      public String get(long k) {
+        if(k == 2) {
+          throw new IllegalStateException("shard\nunreadable");
+        }
+        return "a";
+      }
+    };
+    try(SubstringServer other = new SubstringServer(failing, new InetSocketAddress("127.0.0.1", 0))) {
+      assertEquals("ERR shard unreadable\n", other.handle("GET 2"));
+      assertEquals("ERR shard unreadable\n", other.handle("BATCH 1 2"));
+      assertEquals("OK a\n", other.handle("GET 1"));
+
+      other.start();
+      try(Socket socket = new Socket("127.0.0.1", other.port())) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        send(socket, "GET 2\nGET 1\n");
+        assertEquals("ERR shard unreadable", reader.readLine());
+        assertEquals("OK a", reader.readLine());
+      }
+    }
+  }
+
+  @Test
+  public void serve_clients() throws Exception {
+    server.start();
+    List<Socket> clients = new ArrayList<>();
+    List<BufferedReader> readers = new ArrayList<>();
+    for(int i = 0; i < 3; ++i) {
+      Socket socket = new Socket("127.0.0.1", server.port());
+      clients.add(socket);
+      readers.add(new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)));
+    }
+    // interleaved requests, the first one split over two writes
+    send(clients.get(0), "GE");
+    send(clients.get(1), "SIZE\n");
+    send(clients.get(0), "T 13\nBATCH 9 11\n");
+    send(clients.get(2), "GET 99\n");
+    assertEquals("OK 14", readers.get(1).readLine());
+    assertEquals("OK bc", readers.get(0).readLine());
+    assertEquals("OK b", readers.get(0).readLine());
+    assertEquals("OK bab", readers.get(0).readLine());
+    assertEquals("NONE", readers.get(2).readLine());
+
+    send(clients.get(1), "QUIT\n");
+    assertNull(readers.get(1).readLine());
+
+    // a batch larger than the socket buffers
+    StringBuilder batch = new StringBuilder("BATCH");
+    for(int i = 0; i < 50000; ++i) {
+      batch.append(' ').append(1 + i % 14);
+    }
+    send(clients.get(2), batch.append('\n').toString());
+    for(int i = 0; i < 50000; ++i) {
+      assertEquals("OK " + s.get(1 + i % 14), readers.get(2).readLine());
+    }
+    for(Socket socket : clients) {
+      socket.close();
+    }
+    assertEquals(5, server.latency().count());
+  }
+
+  static void send(Socket socket, String text) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    out.write(text.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+}
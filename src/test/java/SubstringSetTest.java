@@ -1,8 +1,16 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -90,8 +98,8 @@ public class SubstringSetTest {
     SubstringSet.PartitionResult p = s.getPartition(s.root, 12);
     assertNotNull(p);
     assertEquals(8, p.getNumElementsBeforePartition());
-    assertEquals('b', p.getPartition().getC().charValue());
-    assertEquals(5, p.getPartition().getCount());
+    assertEquals('b', s.nodes.label(p.getPartition()));
+    assertEquals(5, s.nodes.count(p.getPartition()));
   }
 
   @Test
@@ -101,8 +109,8 @@ public class SubstringSetTest {
     SubstringSet.PartitionResult p = s.getPartition(s.root, 9);
     assertNotNull(p);
     assertEquals(8, p.getNumElementsBeforePartition());
-    assertEquals('b', p.getPartition().getC().charValue());
-    assertEquals(5, p.getPartition().getCount());
+    assertEquals('b', s.nodes.label(p.getPartition()));
+    assertEquals(5, s.nodes.count(p.getPartition()));
   }
 
   @Test
@@ -112,8 +120,8 @@ public class SubstringSetTest {
     SubstringSet.PartitionResult p = s.getPartition(s.root, 13);
     assertNotNull(p);
     assertEquals(8, p.getNumElementsBeforePartition());
-    assertEquals('b', p.getPartition().getC().charValue());
-    assertEquals(5, p.getPartition().getCount());
+    assertEquals('b', s.nodes.label(p.getPartition()));
+    assertEquals(5, s.nodes.count(p.getPartition()));
   }
 
   @Test
@@ -123,8 +131,8 @@ public class SubstringSetTest {
     SubstringSet.PartitionResult p = s.getPartition(s.root, 1);
     assertNotNull(p);
     assertEquals(0, p.getNumElementsBeforePartition());
-    assertEquals('a', p.getPartition().getC().charValue());
-    assertEquals(8, p.getPartition().getCount());
+    assertEquals('a', s.nodes.label(p.getPartition()));
+    assertEquals(8, s.nodes.count(p.getPartition()));
   }
 
   @Test
@@ -134,8 +142,8 @@ public class SubstringSetTest {
     SubstringSet.PartitionResult p = s.getPartition(s.root, 14);
     assertNotNull(p);
     assertEquals(13, p.getNumElementsBeforePartition());
-    assertEquals('c', p.getPartition().getC().charValue());
-    assertEquals(1, p.getPartition().getCount());
+    assertEquals('c', s.nodes.label(p.getPartition()));
+    assertEquals(1, s.nodes.count(p.getPartition()));
   }
 
   @Test
@@ -159,6 +167,629 @@ public class SubstringSetTest {
     assertNull(s.find(23));
   }
 
+  @Test
+  public void find_all_1() {
+    insert(TEST_SET_1, 14);
+
+    String[] results = s.getAll(new long[] { 13, 11, 9, 1, 14, 8, 0, 15, 11 });
+    assertArrayEquals(new String[] { "bc", "bab", "b", "a", "c", "ac", null, null, "bab" }, results);
+    assertEquals(0, s.getAll(new long[0]).length);
+  }
+
+  @Test
+  public void find_all_matches_find() {
+    s.insert(new String(longString(300, 3)));
+    s.insert(new String(longString(200, 4)));
+    Random r = new Random(5);
+    long[] orders = new long[2000];
+    for(int i = 0; i < orders.length; ++i) {
+      orders[i] = r.nextInt((int) s.size() + 2);
+    }
+    String[] results = s.getAll(orders);
+    for(int i = 0; i < orders.length; ++i) {
+      assertEquals(s.find(orders[i]), results[i]);
+    }
+  }
+
+  @Test
+  public void node_store_big_counts() {
+    SubstringSet.NodeStore nodes = new SubstringSet.NodeStore();
+    int small = nodes.create('a', 1);
+    int big = nodes.create('b', 1);
+    nodes.accumulateCountBy(small, 41);
+    nodes.accumulateCountBy(big, Integer.MAX_VALUE);
+    nodes.accumulateCountBy(big, 10);
+
+    assertEquals(42, nodes.count(small));
+    assertEquals(Integer.MAX_VALUE + 11L, nodes.count(big));
+    assertEquals(1, nodes.bigSize);
+  }
+
+  @Test
+  public void find_kth_64bit() {
+    s.insert("a");
+    s.insert("b");
+    // pretend 'a' has 3 billion more substrings below it
+    long extra = 3000000000L;
+    int a = s.getPartition(s.root, 1).getPartition();
+    s.nodes.accumulateCountBy(a, extra);
+    s.nodes.accumulateCountBy(s.root, extra);
+
+    assertEquals(extra + 2, s.size());
+    assertEquals("a", s.find(1));
+    assertEquals("b", s.find(extra + 2));
+    assertNull(s.find(extra + 3));
+    assertArrayEquals(new String[] { "b", "a", null }, s.getAll(new long[] { extra + 2, 1, extra + 3 }));
+  }
+
+  @Test
+  public void find_kth_wide_alphabet() {
+    Random r = new Random(13);
+    SuffixAutomatonSet expected = new SuffixAutomatonSet();
+    for(int round = 0; round < 6; ++round) {
+      StringBuilder b = new StringBuilder();
+      for(int i = 0; i < 120; ++i) {
+        b.append((char) ('!' + r.nextInt(90)));
+      }
+      assertEquals(expected.insert(b.toString()), s.insert(b.toString()));
+      // queries between inserts see the entries rebuilt by the inserts
+      for(long k = 1; k <= s.size(); k += 1 + r.nextInt(40)) {
+        assertEquals(expected.get(k), s.get(k));
+      }
+    }
+    assertNotEquals(SubstringSet.NIL, s.childIndex.entryOf(s.root));
+    assertTrue(s.childIndex.isFresh(s.childIndex.entryOf(s.root)));
+    assertEquals(expected.insert("~~~"), s.insert("~~~"));
+    // the insert itself re-builds the entries it made stale, get only reads
+    assertTrue(s.childIndex.isFresh(s.childIndex.entryOf(s.root)));
+    assertEquals(expected.get(s.size()), s.get(s.size()));
+  }
+
+  @Test
+  public void insert_long_suffix() {
+    char[] buf = longString(200000, 42);
+    assertEquals(buf.length, s.insertSuffix(buf, 0, buf.length - 1));
+    assertEquals(buf.length, s.size());
+
+    // shares the first 100000 chars, diverges after that
+    char[] other = buf.clone();
+    other[100000] = (other[100000] == 'a') ? 'b' : 'a';
+    assertEquals(100000, s.insertSuffix(other, 0, other.length - 1));
+    assertEquals(0, s.insertSuffix(other, 0, 49999));
+    assertEquals(300000, s.size());
+
+    String expectedLast = new String((buf[100000] > other[100000]) ? buf : other);
+    assertEquals(expectedLast, s.find(300000));
+    assertEquals(String.valueOf(buf[0]), s.find(1));
+  }
+
+  @Test
+  public void insert_long_string() {
+    char[] buf = longString(3000, 7);
+    SuffixAutomatonSet expected = new SuffixAutomatonSet();
+    assertEquals(expected.insert(new String(buf)), s.insert(new String(buf)));
+    assertEquals(expected.size(), s.size());
+    for(int k = 1; k <= s.size(); k += 9973) {
+      assertEquals(expected.get(k), s.get(k));
+    }
+  }
+
+  @Test
+  public void build_parallel_1() {
+    s = SubstringSet.buildParallel(TEST_SET_1);
+    assertEquals(14, s.size());
+
+    SubstringSet.PartitionResult p = s.getPartition(s.root, 12);
+    assertEquals(8, p.getNumElementsBeforePartition());
+    assertEquals('b', s.nodes.label(p.getPartition()));
+    assertEquals(5, s.nodes.count(p.getPartition()));
+    assertEquals("bc", s.find(13));
+    assertEquals("bab", s.find(11));
+    assertEquals("c", s.find(14));
+  }
+
+  @Test
+  public void build_parallel_matches_sequential() {
+    Random r = new Random(11);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for(int round = 0; round < 20; ++round) {
+        List<String> strings = new ArrayList<>();
+        SubstringSet expected = new SubstringSet();
+        int nStrings = 1 + r.nextInt(8);
+        for(int i = 0; i < nStrings; ++i) {
+          String str = new String(longString(r.nextInt(40), r.nextLong()));
+          strings.add(str);
+          expected.insert(str);
+        }
+        SubstringSet actual = SubstringSet.buildParallel(strings, pool);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.nodes.size(), actual.nodes.size());
+        assertArrayEquals(expected.stats().getNodesAtDepth(), actual.stats().getNodesAtDepth());
+        for(int k = 0; k <= expected.size() + 1; ++k) {
+          assertEquals(expected.get(k), actual.get(k));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void stats_1() {
+    s = SubstringSet.builder().recordQueries(true).build();
+    for(String str : TEST_SET_2) {
+      s.insert(str);
+    }
+    s.get(4);
+    s.get(8);
+    s.get(23);
+
+    SubstringSetStats stats = s.stats();
+    assertEquals(8, stats.getSize());
+    assertEquals(9, stats.getNodeCount());
+    assertEquals(6, stats.getInsertedChars());
+    assertEquals(1.5, stats.getNodesPerInsertedChar(), 1e-9);
+    assertEquals(3, stats.getMaxDepth());
+    assertArrayEquals(new long[] { 1, 3, 3, 2 }, stats.getNodesAtDepth());
+    assertTrue(stats.getEstimatedBytes() >= 14 * 9);
+    assertTrue(stats.getInsertNanos() > 0);
+    assertEquals(3, stats.getQueryLatency().count());
+  }
+
+  @Test
+  public void stats_queries_not_recorded_by_default() {
+    for(String str : TEST_SET_2) {
+      s.insert(str);
+    }
+    s.get(4);
+    s.getView(8);
+    assertNull(s.metrics.queryLatency);
+    assertEquals(0, s.stats().getQueryLatency().count());
+  }
+
+  @Test
+  public void stats_depths_match_trie() {
+    Random r = new Random(5);
+    for(int i = 0; i < 10; ++i) {
+      s.insert(SuffixAutomatonSetTest.randomString(r, 1 + r.nextInt(60), 1 + r.nextInt(3)));
+    }
+    long[] atDepth = new long[s.stats().getMaxDepth() + 1];
+    countDepths(s, s.root, 0, atDepth);
+    assertArrayEquals(atDepth, s.stats().getNodesAtDepth());
+
+    long nodes = 0;
+    for(long n : atDepth) {
+      nodes += n;
+    }
+    assertEquals(s.nodes.size(), nodes);
+  }
+
+  @Test
+  public void remove_1() {
+    s = new SubstringSet(true);
+    for(String str : TEST_SET_2) {
+      s.insert(str);
+    }
+    assertEquals(3, s.remove("aac"));
+    assertEquals(5, s.size());
+    assertEquals("a", s.get(1));
+    assertEquals("aab", s.get(3));
+    assertEquals("b", s.get(5));
+    assertNull(s.get(6));
+    assertEquals(6, s.stats().getNodeCount());
+
+    assertEquals(5, s.remove("aab"));
+    assertEquals(0, s.size());
+    assertNull(s.get(1));
+    assertEquals(0, s.stats().getMaxDepth());
+  }
+
+  @Test
+  public void remove_multiset() {
+    s = new SubstringSet(true);
+    s.insert("ab");
+    s.insert("ab");
+    s.insert("b");
+
+    // a substring of an inserted string, but not inserted itself
+    assertEquals(0, s.remove("a"));
+    assertEquals(0, s.remove("ba"));
+    assertEquals(3, s.size());
+
+    assertEquals(0, s.remove("ab"));
+    assertEquals(3, s.size());
+    assertEquals(2, s.remove("ab"));
+    assertEquals(1, s.size());
+    assertEquals("b", s.get(1));
+    assertEquals(1, s.remove("b"));
+    assertEquals(0, s.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void remove_not_removable() {
+    s.insert("ab");
+    s.remove("ab");
+  }
+
+  @Test
+  public void remove_sliding_window() {
+    Random r = new Random(29);
+    s = new SubstringSet(true);
+    List<String> window = new ArrayList<>();
+    int peakSlots = 0;
+    for(int step = 0; step < 60; ++step) {
+      String str = SuffixAutomatonSetTest.randomString(r, 1 + r.nextInt(40), 1 + r.nextInt(3));
+      window.add(str);
+      s.insert(str);
+      if(window.size() > 5) {
+        s.remove(window.remove(0));
+      }
+
+      SubstringSet expected = new SubstringSet();
+      window.forEach(expected::insert);
+      assertEquals(expected.size(), s.size());
+      assertEquals(expected.nodes.size(), s.nodes.liveCount());
+      for(int k = 0; k <= expected.size() + 1; ++k) {
+        assertEquals(expected.get(k), s.get(k));
+      }
+      assertArrayEquals(expected.stats().getNodesAtDepth(), s.stats().getNodesAtDepth());
+      peakSlots = Math.max(peakSlots, s.nodes.liveCount());
+    }
+    // freed nodes are re-used
+    assertTrue(s.nodes.size() <= 2 * peakSlots);
+  }
+
+  @Test
+  public void max_length_1() {
+    s = SubstringSet.builder().maxLength(2).build();
+    for(String str : TEST_SET_2) {
+      s.insert(str);
+    }
+    assertEquals(6, s.size());
+    assertEquals("a", s.get(1));
+    assertEquals("aa", s.get(2));
+    assertEquals("ab", s.get(3));
+    assertEquals("ac", s.get(4));
+    assertEquals("c", s.get(6));
+    assertNull(s.get(7));
+    assertEquals(2, s.stats().getMaxDepth());
+  }
+
+  @Test
+  public void max_length_matches_brute_force() {
+    Random r = new Random(31);
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      for(int round = 0; round < 20; ++round) {
+        int maxLength = 1 + r.nextInt(6);
+        List<String> strings = new ArrayList<>();
+        TreeSet<String> expected = new TreeSet<>();
+        for(int i = 0; i < 1 + r.nextInt(5); ++i) {
+          String str = SuffixAutomatonSetTest.randomString(r, r.nextInt(30), 1 + r.nextInt(3));
+          strings.add(str);
+          for(int st = 0; st < str.length(); ++st) {
+            for(int en = st + 1; en <= Math.min(str.length(), st + maxLength); ++en) {
+              expected.add(str.substring(st, en));
+            }
+          }
+        }
+        SubstringSet.Builder builder = SubstringSet.builder().maxLength(maxLength);
+        SubstringSet sequential = builder.build();
+        strings.forEach(sequential::insert);
+        SubstringSet parallel = builder.buildParallel(strings, pool);
+
+        List<String> ordered = new ArrayList<>(expected);
+        assertEquals(ordered.size(), sequential.size());
+        assertEquals(ordered.size(), parallel.size());
+        for(int k = 1; k <= ordered.size(); ++k) {
+          assertEquals(ordered.get(k - 1), sequential.get(k));
+          assertEquals(ordered.get(k - 1), parallel.get(k));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void max_length_remove() {
+    s = SubstringSet.builder().maxLength(2).removable(true).build();
+    s.insert("abc");
+    s.insert("bcd");
+    assertEquals(7, s.size());
+    assertEquals(2, s.remove("abc"));
+    assertEquals(5, s.size());
+    assertEquals("b", s.get(1));
+    assertEquals("bc", s.get(2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void max_length_must_be_positive() {
+    SubstringSet.builder().maxLength(0);
+  }
+
+  @Test
+  public void alphabet_matches_chars() {
+    Random r = new Random(37);
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      for(int round = 0; round < 20; ++round) {
+        List<String> strings = new ArrayList<>();
+        for(int i = 0; i < 1 + r.nextInt(6); ++i) {
+          strings.add(SuffixAutomatonSetTest.randomString(r, r.nextInt(40), 1 + r.nextInt(26)));
+        }
+        SubstringSet expected = new SubstringSet();
+        strings.forEach(expected::insert);
+        SubstringSet packed = SubstringSet.builder().alphabet(Alphabet.LOWERCASE).removable(true).build();
+        strings.forEach(packed::insert);
+        SubstringSet parallel = SubstringSet.builder().alphabet(Alphabet.detect(strings)).buildParallel(strings, pool);
+
+        assertEquals(expected.size(), packed.size());
+        assertEquals(expected.size(), parallel.size());
+        assertArrayEquals(expected.getAll(new long[] { 1, expected.size() }), packed.getAll(new long[] { 1, expected.size() }));
+        for(int k = 0; k <= expected.size() + 1; ++k) {
+          assertEquals(expected.get(k), packed.get(k));
+          assertEquals(expected.get(k), parallel.get(k));
+        }
+        assertNull(packed.nodes.labels);
+        assertEquals(SubstringSet.NodeStore.packedWords(packed.nodes.capacity(), 5), packed.nodes.packedLabels.length);
+        if(!strings.isEmpty()) {
+          packed.remove(strings.get(0));
+          expected = new SubstringSet();
+          strings.subList(1, strings.size()).forEach(expected::insert);
+          assertEquals(expected.size(), packed.size());
+          assertEquals(expected.get(expected.size()), packed.get(packed.size()));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void alphabet_rejects_other_chars() {
+    s = SubstringSet.builder().alphabet(Alphabet.DNA).build();
+    s.insert("ACGTN");
+  }
+
+  @Test
+  public void rank_1() {
+    for(String str : TEST_SET_2) {
+      s.insert(str);
+    }
+    assertEquals(1, s.rank("a"));
+    assertEquals(4, s.rank("aac"));
+    assertEquals(8, s.rank("c"));
+    assertEquals(-1, s.rank(""));
+    assertEquals(-4, s.rank("aaba"));
+    assertEquals(-5, s.rank("aad"));
+    assertEquals(-9, s.rank("d"));
+
+    assertEquals(8, s.countWithPrefix(""));
+    assertEquals(6, s.countWithPrefix("a"));
+    assertEquals(3, s.countWithPrefix("aa"));
+    assertEquals(0, s.countWithPrefix("ba"));
+    assertEquals("aa", s.getWithPrefix("aa", 1));
+    assertEquals("aac", s.getWithPrefix("aa", 3));
+    assertNull(s.getWithPrefix("aa", 4));
+    assertNull(s.getWithPrefix("aa", 0));
+    assertNull(s.getWithPrefix("d", 1));
+  }
+
+  @Test
+  public void rank_matches_brute_force() {
+    Random r = new Random(41);
+    for(int round = 0; round < 20; ++round) {
+      boolean packed = r.nextBoolean();
+      s = packed ? SubstringSet.builder().alphabet(Alphabet.of("abcd")).build() : new SubstringSet();
+      TreeSet<String> all = new TreeSet<>();
+      for(int i = 0; i < 1 + r.nextInt(5); ++i) {
+        String str = SuffixAutomatonSetTest.randomString(r, r.nextInt(25), 1 + r.nextInt(4));
+        s.insert(str);
+        for(int st = 0; st < str.length(); ++st) {
+          for(int en = st + 1; en <= str.length(); ++en) {
+            all.add(str.substring(st, en));
+          }
+        }
+      }
+      List<String> ordered = new ArrayList<>(all);
+      for(int k = 1; k <= ordered.size(); ++k) {
+        assertEquals(k, s.rank(ordered.get(k - 1)));
+      }
+      for(int q = 0; q < 50; ++q) {
+        String probe = SuffixAutomatonSetTest.randomString(r, 1 + r.nextInt(5), 5);
+        int expectedRank = all.contains(probe) ? all.headSet(probe).size() + 1 : -(all.headSet(probe).size() + 1);
+        assertEquals(expectedRank, s.rank(probe));
+
+        String prefix = probe.substring(0, 1 + r.nextInt(probe.length()));
+        List<String> withPrefix = new ArrayList<>();
+        for(String str : all) {
+          if(str.startsWith(prefix)) {
+            withPrefix.add(str);
+          }
+        }
+        assertEquals(withPrefix.size(), s.countWithPrefix(prefix));
+        for(int k = 0; k <= withPrefix.size() + 1; ++k) {
+          String expected = (k >= 1 && k <= withPrefix.size()) ? withPrefix.get(k - 1) : null;
+          assertEquals(expected, s.getWithPrefix(prefix, k));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void get_view_1() {
+    s = SubstringSet.builder().witnesses(true).build();
+    s.insert("aab");
+    s.insert("aac");
+    for(int k = 0; k <= 9; ++k) {
+      CharSequence view = s.getView(k);
+      assertEquals(s.get(k), (view == null) ? null : view.toString());
+    }
+    // 'ac' was created by "aac"
+    assertEquals(1, s.nodes.witnessSource[s.nodeOf("ac")]);
+    assertEquals(3, s.nodes.witnessEnd[s.nodeOf("ac")]);
+  }
+
+  @Test
+  public void get_view_without_witnesses() {
+    s.insert("aab");
+    assertEquals("ab", s.getView(4));
+  }
+
+  @Test
+  public void get_view_matches_get() {
+    Random r = new Random(43);
+    for(int round = 0; round < 20; ++round) {
+      SubstringSet.Builder builder = SubstringSet.builder().witnesses(true).removable(r.nextBoolean());
+      if(r.nextBoolean()) {
+        builder.alphabet(Alphabet.of("abcd"));
+      }
+      if(r.nextBoolean()) {
+        builder.maxLength(1 + r.nextInt(6));
+      }
+      s = builder.build();
+      List<String> strings = new ArrayList<>();
+      for(int i = 0; i < 1 + r.nextInt(6); ++i) {
+        String str = SuffixAutomatonSetTest.randomString(r, r.nextInt(25), 1 + r.nextInt(4));
+        s.insert(str);
+        strings.add(str);
+      }
+      if(s.inserted != null) {
+        s.remove(strings.get(0));
+        s.insert(SuffixAutomatonSetTest.randomString(r, r.nextInt(25), 1 + r.nextInt(4)));
+      }
+      for(int k = 1; k <= s.size(); ++k) {
+        assertEquals(s.get(k), s.getView(k).toString());
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void get_view_build_parallel() {
+    SubstringSet.builder().witnesses(true).buildParallel(TEST_SET_1, ForkJoinPool.commonPool());
+  }
+
+  @Test
+  public void wide_nodes_indexed_by_writes() {
+    s = new SubstringSet(true);
+    s.insert("abcdefghij");
+    assertTrue(s.childIndex.indexed.get(s.root));
+    int e = s.childIndex.entryOf(s.root);
+    assertTrue(s.childIndex.isFresh(e));
+    s.insert("k");
+    assertTrue(s.childIndex.isFresh(e));
+    assertEquals(11, s.childIndex.fanout[e]);
+    s.remove("abcdefghij");
+    assertEquals(0, s.childIndex.pendingSize);
+    assertEquals("k", s.get(1));
+    assertEquals(1, s.size());
+  }
+
+  @Test
+  public void distinct_chars() {
+    assertArrayEquals(new char[] { 'a', 'b', 'c', '\uffff' },
+        SubstringSet.distinctChars(new char[][] { "cab".toCharArray(), {}, "b\uffffa".toCharArray() }));
+    assertEquals(0, SubstringSet.distinctChars(new char[][] { {} }).length);
+  }
+
+  @Test
+  public void stale_entry_rebuilt_when_wide_again() {
+    s = new SubstringSet(true);
+    s.insert("abcdefghij");
+    int e = s.childIndex.entryOf(s.root);
+    s.remove("abcdefghij");
+    assertFalse(s.childIndex.isFresh(e));
+    // below WIDE : stays stale
+    s.insert("abc");
+    assertFalse(s.childIndex.isFresh(e));
+    // back to 10 children, through re-used slots
+    s.insert("defghij");
+    assertEquals(e, s.childIndex.entryOf(s.root));
+    assertTrue(s.childIndex.isFresh(e));
+    assertEquals(10, s.childIndex.fanout[e]);
+    s.insert("klm");
+    assertTrue(s.childIndex.isFresh(e));
+    assertEquals(13, s.childIndex.fanout[e]);
+    SubstringSet expected = new SubstringSet();
+    expected.insert("abc");
+    expected.insert("defghij");
+    expected.insert("klm");
+    assertEquals(expected.size(), s.size());
+    for(long k = 1; k <= s.size(); ++k) {
+      assertEquals(expected.get(k), s.get(k));
+    }
+  }
+
+  @Test
+  public void concurrent_get() throws Exception {
+    // 90 symbols, so that most nodes near the root are wide
+    Random r = new Random(61);
+    s = new SubstringSet();
+    for(int i = 0; i < 200; ++i) {
+      char[] buf = new char[1 + r.nextInt(60)];
+      for(int j = 0; j < buf.length; ++j) {
+        buf[j] = (char) ('!' + r.nextInt(90));
+      }
+      s.insert(new String(buf));
+    }
+    long size = s.size();
+    String[] expected = new String[4000];
+    long[] orders = new long[expected.length];
+    for(int i = 0; i < orders.length; ++i) {
+      orders[i] = 1 + (long) (r.nextDouble() * size);
+    }
+    // answered by the range walk, which does not go through the ChildIndex
+    List<String> all = s.stream(1, size).map(CharSequence::toString).collect(Collectors.toList());
+    for(int i = 0; i < orders.length; ++i) {
+      expected[i] = all.get((int) orders[i] - 1);
+    }
+
+    // reads must not touch the index
+    int entries = s.childIndex.entries;
+    int[] keys = s.childIndex.keys;
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Integer>> results = new ArrayList<>();
+    for(int t = 0; t < 8; ++t) {
+      final int offset = t;
+      results.add(pool.submit(() -> {
+        int wrong = 0;
+        for(int round = 0; round < 20; ++round) {
+          for(int i = 0; i < orders.length; ++i) {
+            int q = (i + offset * 500) % orders.length;
+            if(!expected[q].equals(s.get(orders[q]))) {
+              ++wrong;
+            }
+          }
+        }
+        return wrong;
+      }));
+    }
+    for(Future<Integer> wrong : results) {
+      assertEquals(0, (int) wrong.get());
+    }
+    pool.shutdown();
+    assertEquals(entries, s.childIndex.entries);
+    assertSame(keys, s.childIndex.keys);
+  }
+
+  static void countDepths(SubstringSet s, int n, int depth, long[] atDepth) {
+    ++atDepth[depth];
+    for(int c = s.nodes.firstChild(n); c != SubstringSet.NIL; c = s.nodes.nextSibling(c)) {
+      countDepths(s, c, depth + 1, atDepth);
+    }
+  }
+
+  static char[] longString(int length, long seed) {
+    Random r = new Random(seed);
+    char[] buf = new char[length];
+    for(int i = 0; i < length; ++i) {
+      buf[i] = (char) ('a' + r.nextInt(26));
+    }
+    return buf;
+  }
+
   void insert(List<String> samples, int expectedSize) {
     samples.forEach(s::insert);
     assertEquals(expectedSize, s.size());
@@ -0,0 +1,86 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SuffixArraySetTest {
+
+  final static List<String> TEST_SET_1 = Arrays.asList(
+      "aac",
+      "abc",
+      "aab",
+      "baba"
+  );
+
+  final static List<String> TEST_SET_2 = Arrays.asList(
+      "aac",
+      "aab"
+  );
+
+  @Test
+  public void size_1() {
+    assertEquals(1, SuffixArraySet.of(Arrays.asList("a")).size());
+    assertEquals(1, SuffixArraySet.of(Arrays.asList("a", "a")).size());
+    assertEquals(2, SuffixArraySet.of(Arrays.asList("aa", "aa")).size());
+    assertEquals(5, SuffixArraySet.of(Arrays.asList("aab")).size());
+    assertEquals(7, SuffixArraySet.of(Arrays.asList("a", "ab", "ba", "bad")).size());
+  }
+
+  @Test
+  public void size_empty() {
+    assertEquals(0, SuffixArraySet.of(Collections.<String>emptyList()).size());
+    assertEquals(0, SuffixArraySet.of(Arrays.asList("")).size());
+    assertNull(SuffixArraySet.of(Arrays.asList("")).get(1));
+  }
+
+  @Test
+  public void find_kth_1() {
+    SuffixArraySet s = SuffixArraySet.of(TEST_SET_1);
+    assertEquals(14, s.size());
+
+    assertEquals("bc", s.find(13));
+    assertEquals("bab", s.find(11));
+    assertEquals("b", s.find(9));
+    assertEquals("a", s.find(1));
+    assertEquals("c", s.find(14));
+    assertEquals("ac", s.find(8));
+  }
+
+  @Test
+  public void find_kth_2() {
+    SuffixArraySet s = SuffixArraySet.of(TEST_SET_2);
+    assertEquals(8, s.size());
+
+    assertEquals("aab", s.find(3));
+    assertEquals("aac", s.find(4));
+    assertEquals("c", s.find(8));
+    assertNull(s.find(23));
+    assertNull(s.find(0));
+  }
+
+  @Test
+  public void matches_trie_random() {
+    Random r = new Random(7);
+    for(int round = 0; round < 50; ++round) {
+      SubstringSet expected = new SubstringSet();
+      List<String> strings = new ArrayList<>();
+      int nStrings = 1 + r.nextInt(6);
+      for(int i = 0; i < nStrings; ++i) {
+        String str = SuffixAutomatonSetTest.randomString(r, 1 + r.nextInt(20), 1 + r.nextInt(4));
+        strings.add(str);
+        expected.insert(str);
+      }
+      SuffixArraySet actual = SuffixArraySet.of(strings);
+      assertEquals(expected.size(), actual.size());
+      for(int k = 0; k <= expected.size() + 1; ++k) {
+        assertEquals(expected.get(k), actual.get(k));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,149 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SuffixAutomatonSetTest {
+
+  final static List<String> TEST_SET_1 = Arrays.asList(
+      "aac",
+      "abc",
+      "aab",
+      "baba"
+  );
+
+  final static List<String> TEST_SET_2 = Arrays.asList(
+      "aac",
+      "aab"
+  );
+
+  SuffixAutomatonSet s;
+
+  @Before
+  public void setup() {
+    s = new SuffixAutomatonSet();
+  }
+
+  @Test
+  public void insert_1() {
+    assertEquals(1, s.insert("a"));
+    assertEquals(1, s.size());
+  }
+
+  @Test
+  public void insert_2() {
+    s.insert("a");
+    assertEquals(2, s.insert("ab"));
+
+    assertEquals(3, s.size());
+  }
+
+  @Test
+  public void insert_3() {
+    s.insert("a");
+    s.insert("ab");
+    s.insert("ba");
+
+    assertEquals(4, s.size());
+  }
+
+  @Test
+  public void insert_4() {
+    s.insert("a");
+    s.insert("ab");
+    s.insert("ba");
+    s.insert("bad");
+
+    assertEquals(7, s.size());
+  }
+
+  @Test
+  public void insert_5() {
+    s.insert("a");
+    assertEquals(0, s.insert("a"));
+
+    assertEquals(1, s.size());
+  }
+
+  @Test
+  public void insert_6() {
+    s.insert("aa");
+    s.insert("aa");
+
+    assertEquals(2, s.size());
+  }
+
+  @Test
+  public void insert_7() {
+    s.insert("aab");
+
+    assertEquals(5, s.size());
+  }
+
+  @Test
+  public void find_kth_1() {
+    insert(TEST_SET_1, 14);
+
+    assertEquals("bc", s.find(13));
+    assertEquals("bab", s.find(11));
+    assertEquals("b", s.find(9));
+    assertEquals("a", s.find(1));
+    assertEquals("c", s.find(14));
+    assertEquals("ac", s.find(8));
+  }
+
+  @Test
+  public void find_kth_2() {
+    insert(TEST_SET_2, 8);
+
+    assertEquals("aab", s.find(3));
+    assertEquals("c", s.find(8));
+    assertNull(s.find(23));
+    assertNull(s.find(0));
+  }
+
+  @Test
+  public void find_kth_interleaved_with_insert() {
+    s.insert("ab");
+    assertEquals("b", s.get(3));
+    s.insert("aa");
+    assertEquals("ab", s.get(3));
+    assertEquals("b", s.get(4));
+  }
+
+  @Test
+  public void matches_trie_random() {
+    Random r = new Random(42);
+    for(int round = 0; round < 50; ++round) {
+      SubstringSet expected = new SubstringSet();
+      SuffixAutomatonSet actual = new SuffixAutomatonSet();
+      int nStrings = 1 + r.nextInt(6);
+      for(int i = 0; i < nStrings; ++i) {
+        String str = randomString(r, 1 + r.nextInt(20), 1 + r.nextInt(4));
+        assertEquals(expected.insert(str), actual.insert(str));
+      }
+      assertEquals(expected.size(), actual.size());
+      for(int k = 0; k <= expected.size() + 1; ++k) {
+        assertEquals(expected.get(k), actual.get(k));
+      }
+    }
+  }
+
+  static String randomString(Random r, int length, int alphabet) {
+    StringBuilder b = new StringBuilder();
+    for(int i = 0; i < length; ++i) {
+      b.append((char) ('a' + r.nextInt(alphabet)));
+    }
+    return b.toString();
+  }
+
+  void insert(List<String> samples, int expectedSize) {
+    samples.forEach(s::insert);
+    assertEquals(expectedSize, s.size());
+  }
+
+}